@@ -0,0 +1,179 @@
+package com.picoff.journaldb;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+public class AsyncJournalWriter implements Closeable {
+    private static final long IDLE_PARK_TIME_NS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long FULL_PARK_TIME_NS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final AsyncJournalWriterOptions DEFAULT_OPTIONS = new AsyncJournalWriterOptions();
+
+    private final JournalDB journalDB;
+    private final MpscRingBuffer<PendingRecord> ring;
+    private final PendingRecord[] batch;
+    private final boolean durable;
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile boolean idle = false;
+
+    public AsyncJournalWriter(final JournalDB journalDB) {
+        this(journalDB, DEFAULT_OPTIONS);
+    }
+
+    public AsyncJournalWriter(final JournalDB journalDB, final AsyncJournalWriterOptions options) {
+        this.journalDB = journalDB;
+        this.ring = new MpscRingBuffer<>(options.getCapacity());
+        this.batch = new PendingRecord[options.getMaxBatchSize()];
+        this.durable = options.durable();
+        this.writer = new Thread(this::writeWork);
+        this.writer.setName("jdb-async-writer");
+        this.writer.start();
+    }
+
+    public CompletableFuture<RecordLocation> write(final byte[] bytes) {
+        return write(ByteBuffer.wrap(bytes), false);
+    }
+
+    public CompletableFuture<RecordLocation> write(final byte[] bytes, final boolean sync) {
+        return write(ByteBuffer.wrap(bytes), sync);
+    }
+
+    public CompletableFuture<RecordLocation> write(final ByteBuffer payload) {
+        return write(payload, false);
+    }
+
+    public CompletableFuture<RecordLocation> write(final ByteBuffer payload, final boolean sync) {
+        final PendingRecord record = new PendingRecord(payload, sync);
+
+        while (!ring.offer(record)) {
+            if (!running) {
+                record.future.completeExceptionally(new IOException("Async journal writer is closed"));
+                return record.future;
+            }
+
+            LockSupport.parkNanos(FULL_PARK_TIME_NS);
+        }
+
+        if (idle) {
+            LockSupport.unpark(writer);
+        }
+
+        if (!running) {
+            awaitWriter();
+            failPending();
+        }
+
+        return record.future;
+    }
+
+    private void writeWork() {
+        while (true) {
+            int count = 0;
+            PendingRecord record;
+
+            while (count < batch.length && null != (record = ring.poll())) {
+                batch[count++] = record;
+            }
+
+            if (count > 0) {
+                writeBatch(count);
+                continue;
+            }
+
+            if (!running) {
+                return;
+            }
+
+            idle = true;
+
+            if (ring.isEmpty() && running) {
+                LockSupport.parkNanos(this, IDLE_PARK_TIME_NS);
+            }
+
+            idle = false;
+        }
+    }
+
+    /**
+     * Appends the drained records, acknowledging them journal by journal as JournalDB splits the batch. A record that
+     * does not fit into any journal fails alone.
+     */
+    private void writeBatch(final int count) {
+        final ByteBuffer[] payloads = new ByteBuffer[count];
+        final RecordLocation[] locations = new RecordLocation[count];
+        boolean sync = durable;
+
+        for (int i = 0; i < count; i++) {
+            payloads[i] = batch[i].payload;
+            sync |= batch[i].sync;
+        }
+
+        int written = 0;
+
+        try {
+            while (written < count) {
+                try {
+                    final int appended = journalDB.appendBatch(payloads, written, sync, locations);
+
+                    for (int i = written; i < written + appended; i++) {
+                        batch[i].future.complete(locations[i]);
+                    }
+
+                    written += appended;
+                } catch (final IllegalArgumentException e) {
+                    batch[written++].future.completeExceptionally(e);
+                }
+            }
+        } catch (final IOException | RuntimeException e) {
+            for (int i = written; i < count; i++) {
+                batch[i].future.completeExceptionally(e);
+            }
+        } finally {
+            Arrays.fill(batch, 0, count, null);
+        }
+    }
+
+    private void awaitWriter() {
+        try {
+            writer.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void failPending() {
+        if (writer.isAlive()) {
+            return;
+        }
+
+        PendingRecord record;
+
+        while (null != (record = ring.poll())) {
+            record.future.completeExceptionally(new IOException("Async journal writer is closed"));
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        awaitWriter();
+        failPending();
+    }
+
+    private static final class PendingRecord {
+        private final CompletableFuture<RecordLocation> future = new CompletableFuture<>();
+        private final ByteBuffer payload;
+        private final boolean sync;
+
+        private PendingRecord(final ByteBuffer payload, final boolean sync) {
+            this.payload = payload;
+            this.sync = sync;
+        }
+    }
+}
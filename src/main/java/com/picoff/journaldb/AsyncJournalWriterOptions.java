@@ -0,0 +1,34 @@
+package com.picoff.journaldb;
+
+public class AsyncJournalWriterOptions {
+    private int capacity = 65536;
+    private int maxBatchSize = 1024;
+    private boolean durable = false;
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public AsyncJournalWriterOptions setCapacity(final int capacity) {
+        this.capacity = capacity;
+        return this;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public AsyncJournalWriterOptions setMaxBatchSize(final int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    public boolean durable() {
+        return durable;
+    }
+
+    public AsyncJournalWriterOptions setDurable(final boolean durable) {
+        this.durable = durable;
+        return this;
+    }
+}
@@ -0,0 +1,67 @@
+package com.picoff.journaldb;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Inflates compressed record blocks into reused buffers. Blocks inflate to the packed payloads of their records, each
+ * one prefixed by its size.
+ */
+final class BlockInflater {
+    private final Inflater inflater = new Inflater();
+    private byte[] input = new byte[0];
+    private byte[] output = new byte[0];
+
+    ByteBuffer inflate(final ByteBuffer payload, final int rawSize) throws IOException {
+        final int length = payload.remaining();
+
+        if (input.length < length) {
+            input = new byte[length];
+        }
+
+        payload.duplicate().get(input, 0, length);
+
+        return inflate(input, length, rawSize);
+    }
+
+    ByteBuffer inflate(final byte[] data, final int length, final int rawSize) throws IOException {
+        if (rawSize < 0) {
+            throw new IOException("Corrupt compressed block");
+        }
+
+        if (output.length < rawSize) {
+            output = new byte[rawSize];
+        }
+
+        inflater.reset();
+        inflater.setInput(data, 0, length);
+
+        try {
+            int inflated = 0;
+
+            while (inflated < rawSize && !inflater.finished()) {
+                final int read = inflater.inflate(output, inflated, rawSize - inflated);
+
+                if (0 == read && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+
+                inflated += read;
+            }
+
+            if (inflated != rawSize) {
+                throw new IOException("Corrupt compressed block");
+            }
+        } catch (final DataFormatException e) {
+            throw new IOException("Corrupt compressed block", e);
+        }
+
+        return ByteBuffer.wrap(output, 0, rawSize);
+    }
+
+    void close() {
+        inflater.end();
+    }
+}
@@ -0,0 +1,33 @@
+package com.picoff.journaldb;
+
+public class ConsumerOffset {
+    private final long fileSequence;
+    private final long offset;
+    private final long recordSequence;
+
+    public ConsumerOffset(
+        final long fileSequence,
+        final long offset,
+        final long recordSequence
+    ) {
+        this.fileSequence = fileSequence;
+        this.offset = offset;
+        this.recordSequence = recordSequence;
+    }
+
+    public long getFileSequence() {
+        return fileSequence;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getRecordSequence() {
+        return recordSequence;
+    }
+
+    public JournalCursorPosition toCursorPosition() {
+        return new JournalCursorPosition(fileSequence, offset);
+    }
+}
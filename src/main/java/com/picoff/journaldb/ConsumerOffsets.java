@@ -0,0 +1,199 @@
+package com.picoff.journaldb;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Named consumer offsets kept in a memory mapped file. Each consumer has a fixed slot holding two checksummed copies
+ * of its offset, and a commit overwrites the older copy, so a torn write never loses the previous commit.
+ */
+final class ConsumerOffsets implements Closeable {
+    static final byte OFFSETS_MAGIC_BYTE = (byte) 'o';
+    static final int HEADER_SIZE = 16;
+    static final int SLOT_COUNT = 1024;
+    static final int SLOT_SIZE = 160;
+    static final int MAX_NAME_SIZE = 62;
+    private static final int COPY_SIZE = 40;
+    private static final int COPY_START = 2 + MAX_NAME_SIZE;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer offsets;
+    private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+    private final CRC32 crc32 = new CRC32();
+    private int nextSlot;
+
+    ConsumerOffsets(final File file) throws IOException {
+        this.channel = FileChannel.open(
+            file.toPath(),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE
+        );
+
+        try {
+            final boolean isNew = 0 == channel.size();
+
+            this.offsets = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + SLOT_COUNT * SLOT_SIZE);
+
+            if (isNew) {
+                offsets.put(0, OFFSETS_MAGIC_BYTE);
+                offsets.putInt(1, SLOT_COUNT);
+            }
+
+            for (int slot = 0; slot < SLOT_COUNT; slot++) {
+                final int nameSize = offsets.getShort(slotStart(slot));
+
+                if (0 == nameSize) {
+                    break;
+                }
+
+                final byte[] name = new byte[nameSize];
+                final ByteBuffer nameRegion = offsets.duplicate();
+                nameRegion.position(slotStart(slot) + 2);
+                nameRegion.get(name);
+
+                slots.put(new String(name, StandardCharsets.UTF_8), slot);
+                nextSlot = slot + 1;
+            }
+        } catch (final IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    synchronized ConsumerOffset get(final String consumer) {
+        final Integer slot = slots.get(consumer);
+
+        if (null == slot) {
+            return null;
+        }
+
+        final int latest = latestCopy(slot);
+
+        if (latest < 0) {
+            return null;
+        }
+
+        return new ConsumerOffset(
+            offsets.getLong(latest + 8),
+            offsets.getLong(latest + 16),
+            offsets.getLong(latest + 24)
+        );
+    }
+
+    /**
+     * Lowest journal file sequence of all committed offsets, Long.MAX_VALUE if no offset is committed.
+     */
+    synchronized long minFileSequence() {
+        long min = Long.MAX_VALUE;
+
+        for (final int slot : slots.values()) {
+            final int latest = latestCopy(slot);
+
+            if (latest >= 0) {
+                min = Math.min(min, offsets.getLong(latest + 8));
+            }
+        }
+
+        return min;
+    }
+
+    synchronized void commit(final String consumer, final ConsumerOffset offset, final boolean sync) {
+        final int slot = slot(consumer);
+        final int latest = latestCopy(slot);
+        final int firstCopy = slotStart(slot) + COPY_START;
+        final int target = latest == firstCopy ? firstCopy + COPY_SIZE : firstCopy;
+        final long version = latest < 0 ? 1 : offsets.getLong(latest) + 1;
+
+        offsets.putLong(target, version);
+        offsets.putLong(target + 8, offset.getFileSequence());
+        offsets.putLong(target + 16, offset.getOffset());
+        offsets.putLong(target + 24, offset.getRecordSequence());
+        offsets.putLong(target + 32, checksum(target));
+
+        if (sync) {
+            offsets.force();
+        }
+    }
+
+    private int slot(final String consumer) {
+        final Integer existing = slots.get(consumer);
+
+        if (null != existing) {
+            return existing;
+        }
+
+        final byte[] name = consumer.getBytes(StandardCharsets.UTF_8);
+
+        if (0 == name.length || name.length > MAX_NAME_SIZE) {
+            throw new IllegalArgumentException("Consumer name must be between 1 and " + MAX_NAME_SIZE + " bytes");
+        }
+
+        if (nextSlot >= SLOT_COUNT) {
+            throw new IllegalStateException("No free consumer offset slots");
+        }
+
+        final int slot = nextSlot++;
+        final ByteBuffer nameRegion = offsets.duplicate();
+        nameRegion.position(slotStart(slot) + 2);
+        nameRegion.put(name);
+        offsets.putShort(slotStart(slot), (short) name.length);
+
+        slots.put(consumer, slot);
+
+        return slot;
+    }
+
+    private int latestCopy(final int slot) {
+        final int firstCopy = slotStart(slot) + COPY_START;
+        final int secondCopy = firstCopy + COPY_SIZE;
+        final boolean firstValid = isValid(firstCopy);
+        final boolean secondValid = isValid(secondCopy);
+
+        if (firstValid && secondValid) {
+            return offsets.getLong(firstCopy) > offsets.getLong(secondCopy) ? firstCopy : secondCopy;
+        }
+
+        if (firstValid) {
+            return firstCopy;
+        }
+
+        return secondValid ? secondCopy : -1;
+    }
+
+    private boolean isValid(final int copy) {
+        return 0 != offsets.getLong(copy) && checksum(copy) == offsets.getLong(copy + 32);
+    }
+
+    private long checksum(final int copy) {
+        final ByteBuffer fields = offsets.duplicate();
+        fields.limit(copy + 32);
+        fields.position(copy);
+
+        crc32.reset();
+        crc32.update(fields);
+        return crc32.getValue();
+    }
+
+    private static int slotStart(final int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            offsets.force();
+        } finally {
+            channel.close();
+        }
+    }
+}
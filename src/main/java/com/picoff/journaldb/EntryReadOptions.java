@@ -4,9 +4,14 @@ import java.util.function.Predicate;
 
 public class EntryReadOptions {
     private long startPosition = Journal.FILE_HEADER_SIZE;
+    private long startSequence = 0;
+    private long startTimestamp = 0;
+    private long endTimestamp = Long.MAX_VALUE;
+    private long timestampSkewTolerance = 1000;
     private boolean failOnMagicByte = true;
     private boolean failOnIntegrityByte = true;
     private boolean verifyChecksum = true;
+    private boolean verifyChecksumLazily = false;
     private Predicate<FilterMetadata> readFilter = null;
 
     public long getStartPosition() {
@@ -18,6 +23,48 @@ public class EntryReadOptions {
         return this;
     }
 
+    public long getStartSequence() {
+        return startSequence;
+    }
+
+    /**
+     * Skip records before the given sequence, seeking through the journal sequence index when one is available.
+     */
+    public EntryReadOptions setStartSequence(final long startSequence) {
+        this.startSequence = startSequence;
+        return this;
+    }
+
+    public long getStartTimestamp() {
+        return startTimestamp;
+    }
+
+    public long getEndTimestamp() {
+        return endTimestamp;
+    }
+
+    /**
+     * Read only records written from the start timestamp, inclusive, to the end timestamp, exclusive.
+     */
+    public EntryReadOptions setTimeRange(final long startTimestamp, final long endTimestamp) {
+        this.startTimestamp = startTimestamp;
+        this.endTimestamp = endTimestamp;
+        return this;
+    }
+
+    public long getTimestampSkewTolerance() {
+        return timestampSkewTolerance;
+    }
+
+    /**
+     * How far out of order, in milliseconds, record timestamps of concurrent writers can be when seeking to the
+     * start of a time range and stopping past its end.
+     */
+    public EntryReadOptions setTimestampSkewTolerance(final long timestampSkewTolerance) {
+        this.timestampSkewTolerance = timestampSkewTolerance;
+        return this;
+    }
+
     public boolean failOnMagicByte() {
         return failOnMagicByte;
     }
@@ -45,6 +92,20 @@ public class EntryReadOptions {
         return this;
     }
 
+    public boolean verifyChecksumLazily() {
+        return verifyChecksumLazily;
+    }
+
+    /**
+     * Verify checksums when the payload of an entry is first accessed rather than when the entry is read. A failed
+     * lazy verification throws an {@link java.io.UncheckedIOException} caused by a
+     * {@link com.picoff.journaldb.exception.RecordChecksumException}. Compressed blocks are always verified on read.
+     */
+    public EntryReadOptions setVerifyChecksumLazily(final boolean verifyChecksumLazily) {
+        this.verifyChecksumLazily = verifyChecksumLazily;
+        return this;
+    }
+
     public Predicate<FilterMetadata> getReadFilter() {
         return readFilter;
     }
@@ -0,0 +1,176 @@
+package com.picoff.journaldb;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+final class GroupCommitter implements Closeable {
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private final List<PendingWrite> batch = new ArrayList<>();
+    private final BatchWriter batchWriter;
+    private final long windowNanos;
+    private final long maxBatchBytes;
+    private final Thread committer;
+    private volatile boolean running = true;
+
+    GroupCommitter(final BatchWriter batchWriter, final long windowNanos, final long maxBatchBytes) {
+        this.batchWriter = batchWriter;
+        this.windowNanos = windowNanos;
+        this.maxBatchBytes = maxBatchBytes;
+        this.committer = new Thread(this::commitWork);
+        this.committer.setName("jdb-group-commit");
+        this.committer.start();
+    }
+
+    void write(final ByteBuffer payload) throws IOException {
+        final PendingWrite write = new PendingWrite(payload);
+
+        queue.add(write);
+
+        if (!running && queue.remove(write)) {
+            throw new IOException("Group commit is closed");
+        }
+
+        try {
+            write.future.join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+
+            throw e;
+        }
+    }
+
+    private void commitWork() {
+        while (running || !queue.isEmpty()) {
+            final PendingWrite first;
+
+            try {
+                first = running ? queue.take() : queue.poll();
+            } catch (final InterruptedException e) {
+                continue;
+            }
+
+            if (null == first) {
+                continue;
+            }
+
+            collectBatch(first);
+            commitBatch();
+        }
+    }
+
+    /**
+     * Collects writes until the window elapses or the records, headers included, reach the maximum batch size.
+     */
+    private void collectBatch(final PendingWrite first) {
+        batch.add(first);
+        long batchBytes = recordSize(first.payload);
+        final long deadline = System.nanoTime() + windowNanos;
+
+        while (batchBytes < maxBatchBytes) {
+            final long remaining = deadline - System.nanoTime();
+            PendingWrite next;
+
+            try {
+                next = remaining > 0 && running
+                    ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+                    : queue.poll();
+            } catch (final InterruptedException e) {
+                next = queue.poll();
+            }
+
+            if (null == next) {
+                return;
+            }
+
+            batch.add(next);
+            batchBytes += recordSize(next.payload);
+        }
+    }
+
+    private static long recordSize(final ByteBuffer payload) {
+        return Journal.RECORD_HEADER_SIZE + payload.remaining() + Journal.RECORD_CHECKSUM_SIZE;
+    }
+
+    /**
+     * Commits the batch part by part as the batch writer writes it, so only the writers whose records were not
+     * written get a failure.
+     */
+    private void commitBatch() {
+        final ByteBuffer[] payloads = new ByteBuffer[batch.size()];
+
+        for (int i = 0; i < payloads.length; i++) {
+            payloads[i] = batch.get(i).payload;
+        }
+
+        int written = 0;
+
+        try {
+            while (written < payloads.length) {
+                final int appended = batchWriter.write(payloads, written);
+
+                for (int i = written; i < written + appended; i++) {
+                    batch.get(i).future.complete(null);
+                }
+
+                written += appended;
+            }
+        } catch (final IOException | RuntimeException e) {
+            for (int i = written; i < payloads.length; i++) {
+                batch.get(i).future.completeExceptionally(e);
+            }
+        } finally {
+            batch.clear();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+
+        if (Thread.currentThread() == committer) {
+            return;
+        }
+
+        committer.interrupt();
+
+        try {
+            committer.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for group commit to finish", e);
+        }
+
+        PendingWrite write;
+
+        while (null != (write = queue.poll())) {
+            write.future.completeExceptionally(new IOException("Group commit is closed"));
+        }
+    }
+
+    @FunctionalInterface
+    interface BatchWriter {
+        /**
+         * Writes and syncs payloads from the offset on, at least one, and returns their number.
+         */
+        int write(final ByteBuffer[] payloads, final int offset) throws IOException;
+    }
+
+    private static final class PendingWrite {
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private final ByteBuffer payload;
+
+        private PendingWrite(final ByteBuffer payload) {
+            this.payload = payload;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.picoff.journaldb;
 
+import com.picoff.commons.functional.Handler;
 import com.picoff.journaldb.exception.ArchivedJournalWriteException;
+import com.picoff.journaldb.exception.JournalFullException;
 import com.picoff.journaldb.exception.JournalMagicByteException;
 import com.picoff.journaldb.exception.NotClosedGracefullyException;
 
@@ -13,34 +15,79 @@ import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.zip.CRC32;
 
 
 public class Journal implements Closeable {
     public static final int FILE_HEADER_SIZE = 100;
     public static final int RECORD_HEADER_SIZE = 48;
     public static final int RECORD_CHECKSUM_SIZE = 8;
+    private static final int RECORD_OVERHEAD = RECORD_HEADER_SIZE + RECORD_CHECKSUM_SIZE;
     public static final byte FILE_MAGIC_BYTE = (byte) 'j';
     public static final byte RECORD_MAGIC_BYTE = (byte) 'r';
     public static final byte B_TRUE = (byte) 1;
     public static final byte B_FALSE = (byte) 0;
+    static final byte RECORD_FLAG_DEFLATE_BLOCK = (byte) 1;
+    static final byte RECORD_FLAG_VOID = (byte) 2;
     private static final byte[] RECORD_WRITE_CONFIRM_FLAG = {B_TRUE};
+    private static final JournalOptions DEFAULT_OPTIONS = new JournalOptions();
+    private static final int SEQUENCE_BITS = 28;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final long MAX_POSITION = (1L << (Long.SIZE - SEQUENCE_BITS)) - 1;
+    private static final String JOURNAL_EXTENSION = ".jdf";
 
-    private final ReentrantLock allocationLock = new ReentrantLock();
+    private final ReentrantLock headerLock = new ReentrantLock();
     private final File file;
     private final FileChannel headerChannel;
-    private final AtomicLong positionIndicator = new AtomicLong(FILE_HEADER_SIZE);
-    private final AtomicLong sequenceCounter = new AtomicLong(0);
+    private final FileChannel dataChannel;
+    private final JournalWriteMode writeMode;
+    private final MappedSegment segment;
+    private final JournalIndex index;
+    private final JournalCompression compression;
+    private final JournalChecksum checksum;
+    private final long capacity;
+    private final AtomicLong allocationTail = new AtomicLong(pack(FILE_HEADER_SIZE, 0));
+    private final AtomicLong minTimestamp = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong maxTimestamp = new AtomicLong(0);
+    private final AtomicLong writtenBytes = new AtomicLong(0);
+    private final AtomicInteger activeWriters = new AtomicInteger(0);
+    private volatile boolean closing;
+    private final long openPosition;
+    private final long positionLimit;
+    private final long overfillLimit;
+    private long recordLimit = SEQUENCE_MASK;
+    private long rotationDeadline = Long.MAX_VALUE;
+    private final long fileSequence;
     private final MappedByteBuffer header;
     private final Path path;
 
     public Journal(
         final File file
+    ) throws IOException {
+        this(DEFAULT_OPTIONS, file);
+    }
+
+    public Journal(
+        final JournalOptions options,
+        final File file
+    ) throws IOException {
+        this(options, file, (long) options.getMaxSizeUnit().toBytes(options.getMaxSize()), -1);
+    }
+
+    Journal(
+        final JournalOptions options,
+        final File file,
+        final long capacity,
+        final long fileSequence
     ) throws IOException {
         this.file = file.getAbsoluteFile();
         this.path = file.getAbsoluteFile().toPath();
+        this.writeMode = options.getWriteMode();
+        this.capacity = capacity;
+        this.fileSequence = fileSequence;
 
         this.headerChannel = FileChannel.open(
             path,
@@ -62,6 +109,16 @@ public class Journal implements Closeable {
             header.putLong(0L); // Archived at
             header.putLong(0L); // Sequence counter
             header.putLong(FILE_HEADER_SIZE); // File end position
+            header.putLong(0L); // Minimum record timestamp
+            header.putLong(0L); // Maximum record timestamp
+            header.put((byte) options.getCompression().ordinal()); // Record compression
+            header.put((byte) options.getChecksum().ordinal()); // Record checksum
+            header.putLong(FILE_HEADER_SIZE); // Safe write position
+            header.putLong(0L); // Safe sequence counter
+
+            this.compression = options.getCompression();
+            this.checksum = options.getChecksum();
+            this.openPosition = FILE_HEADER_SIZE;
         } else {
             header.position(0);
 
@@ -79,15 +136,133 @@ public class Journal implements Closeable {
 
             final byte isClosedGracefully = header.get();
 
-            if (B_FALSE == isClosedGracefully) {
+            if (B_FALSE == isClosedGracefully && !options.recoverNotClosedGracefully()) {
                 throw new NotClosedGracefullyException();
             }
 
             header.position(19);
 
-            sequenceCounter.set(header.getLong()); // Sequence counter
-            positionIndicator.set(header.getLong()); // File end position
+            long sequence = header.getLong(); // Sequence counter
+            long position = header.getLong(); // File end position
+            long minRecordTimestamp = header.getLong(); // Minimum record timestamp
+            long maxRecordTimestamp = header.getLong(); // Maximum record timestamp
+
+            this.compression = compression(header.get()); // Record compression
+            this.checksum = checksum(header.get()); // Record checksum
+
+            if (B_FALSE == isClosedGracefully) {
+                final long safePosition = header.getLong(); // Safe write position
+                final long safeSequence = header.getLong(); // Safe sequence counter
+
+                final JournalRecovery recovery = safePosition >= FILE_HEADER_SIZE
+                    ? JournalRecovery.scan(path, headerChannel, safePosition, safeSequence, checksum)
+                    : JournalRecovery.scan(path, headerChannel, FILE_HEADER_SIZE, 0, checksum);
+
+                headerChannel.truncate(recovery.position);
+                sequence = recovery.sequence;
+                position = recovery.position;
+
+                if (0 != recovery.maxTimestamp) {
+                    minRecordTimestamp = 0 != maxRecordTimestamp
+                        ? Math.min(minRecordTimestamp, recovery.minTimestamp)
+                        : recovery.minTimestamp;
+                    maxRecordTimestamp = Math.max(maxRecordTimestamp, recovery.maxTimestamp);
+                }
+
+                header.putLong(19, sequence);
+                header.putLong(27, position);
+                header.putLong(35, minRecordTimestamp);
+                header.putLong(43, maxRecordTimestamp);
+                header.putLong(53, position);
+                header.putLong(61, sequence);
+            }
+
+            allocationTail.set(pack(Math.min(position, MAX_POSITION), Math.min(sequence, SEQUENCE_MASK)));
+
+            if (0 != maxRecordTimestamp) {
+                minTimestamp.set(minRecordTimestamp);
+                maxTimestamp.set(maxRecordTimestamp);
+            }
+
+            // Cleared until the journal is closed again, so a crash is detected on the next open
+            header.put(2, B_FALSE);
+            header.force();
+
+            this.openPosition = position;
+
+            if (B_FALSE == isClosedGracefully && options.getIndexInterval() > 0) {
+                JournalIndex.truncate(this.file, sequence);
+            }
+        }
+
+        this.dataChannel = JournalWriteMode.PERSISTENT_CHANNEL == writeMode
+            ? getFileChannel(false, path)
+            : null;
+
+        this.positionLimit = capacity > 0
+            ? Math.min(capacity, MAX_POSITION)
+            : MAX_POSITION;
+
+        // A write larger than the whole journal fills an empty journal, except a mapped one, which can not grow
+        this.overfillLimit = JournalWriteMode.MEMORY_MAPPED == writeMode
+            ? positionLimit
+            : MAX_POSITION;
+
+        if (JournalWriteMode.MEMORY_MAPPED == writeMode) {
+            if (capacity < FILE_HEADER_SIZE + RECORD_HEADER_SIZE + RECORD_CHECKSUM_SIZE) {
+                headerChannel.close();
+                throw new IllegalArgumentException("Memory mapped journals require a maximum size");
+            }
+
+            try {
+                this.segment = new MappedSegment(
+                    headerChannel,
+                    capacity,
+                    (long) options.getMappedWindowSizeUnit().toBytes(options.getMappedWindowSize())
+                );
+            } catch (final IOException e) {
+                headerChannel.close();
+                throw e;
+            }
+        } else {
+            this.segment = null;
+        }
+
+        this.index = options.getIndexInterval() > 0
+            ? JournalIndex.open(this.file, options.getIndexInterval())
+            : null;
+    }
+
+    static JournalCompression compression(final byte value) throws IOException {
+        if (value < 0 || value >= JournalCompression.values().length) {
+            throw new IOException("Unknown journal compression " + value);
+        }
+
+        return JournalCompression.values()[value];
+    }
+
+    static JournalChecksum checksum(final byte value) throws IOException {
+        if (value < 0 || value >= JournalChecksum.values().length) {
+            throw new IOException("Unknown journal checksum " + value);
         }
+
+        return JournalChecksum.values()[value];
+    }
+
+    /**
+     * File stored next to a journal, journal_N.ext for journal_N.jdf.
+     */
+    static File sidecarFile(final File journalFile, final String extension) {
+        final String name = journalFile.getName();
+
+        if (name.endsWith(JOURNAL_EXTENSION)) {
+            return new File(
+                journalFile.getParentFile(),
+                name.substring(0, name.length() - JOURNAL_EXTENSION.length()) + extension
+            );
+        }
+
+        return new File(journalFile.getParentFile(), name + extension);
     }
 
     static void markRecordProcessed(
@@ -138,34 +313,66 @@ public class Journal implements Closeable {
     }
 
     public void write(final byte[] bytes, final boolean sync) throws IOException {
-        final int recordSize = RECORD_CHECKSUM_SIZE + RECORD_HEADER_SIZE + bytes.length;
-        final long[] page = allocatePage(recordSize);
-        final long startPosition = page[1] - recordSize;
+        final WriteContext context = WriteContext.get();
+        context.payload(bytes);
+        write(context, sync);
+    }
 
-        final FileChannel writeChannel = getFileChannel(sync, path);
-        final FileLock fileLock = writeChannel.tryLock(startPosition, recordSize, true);
+    public void write(final ByteBuffer payload) throws IOException {
+        write(payload, false);
+    }
 
-        if (null == fileLock) {
-            throw new IOException();
-        }
+    public void write(final ByteBuffer payload, final boolean sync) throws IOException {
+        final WriteContext context = WriteContext.get();
+        context.payload(payload);
+        write(context, sync);
+    }
 
-        writeChannel.position(startPosition);
+    public void write(final int size, final Handler<ByteBuffer> encoder) throws IOException {
+        write(size, encoder, false);
+    }
 
+    public void write(final int size, final Handler<ByteBuffer> encoder, final boolean sync) throws IOException {
+        final WriteContext context = WriteContext.get();
+        context.payload(size, encoder);
+        write(context, sync);
+    }
+
+    private void write(final WriteContext context, final boolean sync) throws IOException {
         try {
-            final CRC32 crc32 = new CRC32();
-            crc32.update(bytes);
+            if (JournalWriteMode.PERSISTENT_CHANNEL == writeMode) {
+                writePersistent(context, sync);
+            } else if (JournalWriteMode.MEMORY_MAPPED == writeMode) {
+                writeMapped(context, sync);
+            } else {
+                writeChannelPerWrite(context, sync);
+            }
+
+            context.checkEncoded();
+        } finally {
+            context.clearPayload();
+        }
+    }
+
+    private void writeChannelPerWrite(final WriteContext context, final boolean sync) throws IOException {
+        final int dataSize = context.payloadSize();
+        final int recordSize = RECORD_CHECKSUM_SIZE + RECORD_HEADER_SIZE + dataSize;
+        allocatePage(recordSize, context.recordCount(), context);
+        final long startPosition = context.startPosition;
+        IOException failure = null;
+
+        try (final FileChannel writeChannel = getFileChannel(sync, path)) {
+            final FileLock fileLock = writeChannel.tryLock(startPosition, recordSize, true);
+
+            if (null == fileLock) {
+                throw new IOException();
+            }
+
+            writeChannel.position(startPosition);
 
             final ByteBuffer record = ByteBuffer.allocateDirect(recordSize);
-            record.put(RECORD_MAGIC_BYTE); // magic byte
-            record.put(B_FALSE); // record integrity marker
-            record.putInt(bytes.length); // payload size
-            record.putLong(page[0]); // sequence
-            record.putLong(page[2]); // timestamp
-            record.put(B_FALSE); // processed flag
-            record.putLong(0); // processed timestamp
-            record.position(RECORD_HEADER_SIZE);
-            record.put(bytes); // data
-            record.putLong(crc32.getValue()); // crc
+            context.putRecordHeader(record, context.sequence, B_FALSE);
+            context.putPayload(record, checksum); // data and checksum
 
             record.flip();
             final int bytesWritten = writeChannel.write(record);
@@ -177,78 +384,687 @@ public class Journal implements Closeable {
             writeChannel.position(startPosition + 1);
             writeChannel.write(ByteBuffer.wrap(RECORD_WRITE_CONFIRM_FLAG));
 
+            index(context.sequence, context.recordCount(), startPosition, context.timestamp);
+            writtenBytes.addAndGet(recordSize);
         } catch (final IOException e) {
-            archiveAndClose();
+            failure = e;
             throw e;
         } finally {
-            writeChannel.close();
+            endWrite(failure);
         }
     }
 
-    private long[] allocatePage(final int length) throws IOException {
-        if (!headerChannel.isOpen()) {
-            throw new IOException();
+    private void writePersistent(final WriteContext context, final boolean sync) throws IOException {
+        final int dataSize = context.payloadSize();
+        final int recordSize = RECORD_CHECKSUM_SIZE + RECORD_HEADER_SIZE + dataSize;
+        allocatePage(recordSize, context.recordCount(), context);
+        final long startPosition = context.startPosition;
+        IOException failure = null;
+
+        try {
+            final ByteBuffer record = context.buffer(recordSize);
+            context.putRecordHeader(record, context.sequence, B_TRUE);
+            context.putPayload(record, checksum); // data and checksum
+            record.flip();
+
+            writeFully(sync ? headerChannel : dataChannel, record, startPosition);
+            index(context.sequence, context.recordCount(), startPosition, context.timestamp);
+            writtenBytes.addAndGet(recordSize);
+        } catch (final IOException e) {
+            failure = e;
+            throw e;
+        } finally {
+            endWrite(failure);
+        }
+    }
+
+    private void writeMapped(final WriteContext context, final boolean sync) throws IOException {
+        final int recordSize = RECORD_CHECKSUM_SIZE + RECORD_HEADER_SIZE + context.payloadSize();
+        allocatePage(recordSize, context.recordCount(), context);
+        final long startPosition = context.startPosition;
+        IOException failure = null;
+
+        try {
+            putMappedRecord(startPosition, context.sequence, context);
+            index(context.sequence, context.recordCount(), startPosition, context.timestamp);
+            writtenBytes.addAndGet(recordSize);
+
+            if (sync) {
+                headerChannel.force(false);
+            }
+        } catch (final IOException e) {
+            failure = e;
+            throw e;
+        } finally {
+            endWrite(failure);
+        }
+    }
+
+    private void putMappedRecord(final long startPosition, final long sequence, final WriteContext context) {
+        final int dataSize = context.payloadSize();
+        final int recordSize = RECORD_HEADER_SIZE + dataSize + RECORD_CHECKSUM_SIZE;
+
+        ByteBuffer record = segment.region(startPosition, recordSize);
+        final boolean spansWindows = null == record;
+
+        if (spansWindows) {
+            record = context.buffer(recordSize);
+        }
+
+        context.putRecordHeader(record, sequence, B_FALSE);
+        context.putPayload(record, checksum); // data and checksum
+
+        if (spansWindows) {
+            record.flip();
+            segment.put(startPosition, record);
+        }
+
+        segment.put(startPosition + 1, B_TRUE);
+    }
+
+    public void writeBatch(final List<byte[]> payloads) throws IOException {
+        writeBatch(payloads, false);
+    }
+
+    public void writeBatch(final List<byte[]> payloads, final boolean sync) throws IOException {
+        final ByteBuffer[] buffers = new ByteBuffer[payloads.size()];
+
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.wrap(payloads.get(i));
+        }
+
+        writeBatch(buffers, sync);
+    }
+
+    public void writeBatch(final ByteBuffer[] payloads) throws IOException {
+        writeBatch(payloads, false);
+    }
+
+    public void writeBatch(final ByteBuffer[] payloads, final boolean sync) throws IOException {
+        if (0 == payloads.length) {
+            return;
+        }
+
+        final WriteContext context = WriteContext.get();
+
+        if (JournalCompression.DEFLATE == compression && payloads.length > 1 && context.payloadBlock(payloads, 0)) {
+            write(context, sync);
+            return;
         }
 
-        allocationLock.lock();
+        context.clearBlock();
+        allocatePage(batchSize(payloads, 0, payloads.length), payloads.length, context);
+        writeRecords(payloads, 0, payloads.length, sync, null, context);
+    }
+
+    /**
+     * Writes the records from the given offset on that fit into the rest of the journal, at least one, stores their
+     * locations and returns their number. JournalDB writes the remaining records into the next journal. Records of a
+     * compressed block share the block's position.
+     */
+    int append(
+        final ByteBuffer[] payloads,
+        final int offset,
+        final boolean sync,
+        final RecordLocation[] locations
+    ) throws IOException {
+        final int remaining = payloads.length - offset;
+        final WriteContext context = WriteContext.get();
+
+        if (JournalCompression.DEFLATE == compression && remaining > 1 && context.payloadBlock(payloads, offset)) {
+            if (fits(RECORD_OVERHEAD + context.payloadSize(), remaining)) {
+                try {
+                    write(context, sync);
+
+                    for (int i = 0; i < remaining; i++) {
+                        locate(locations, offset + i, context.sequence + i, context.startPosition);
+                    }
+
+                    return remaining;
+                } catch (final JournalFullException e) {
+                    // Filled up concurrently, write the records that still fit uncompressed
+                }
+            }
+
+            context.clearPayload();
+        }
+
+        context.clearBlock();
+        final int count = allocateRecords(payloads, offset, context);
+        writeRecords(payloads, offset, count, sync, locations, context);
+        return count;
+    }
+
+    private static long batchSize(final ByteBuffer[] payloads, final int offset, final int count) {
+        long batchSize = 0;
+
+        for (int i = offset; i < offset + count; i++) {
+            batchSize += RECORD_OVERHEAD + payloads[i].remaining();
+        }
+
+        return batchSize;
+    }
+
+    /**
+     * Writes records into the region reserved in the context and ends the write.
+     */
+    private void writeRecords(
+        final ByteBuffer[] payloads,
+        final int offset,
+        final int count,
+        final boolean sync,
+        final RecordLocation[] locations,
+        final WriteContext context
+    ) throws IOException {
+        final long startPosition = context.startPosition;
+        final long firstSequence = context.sequence;
+        final long batchSize = context.endPosition - startPosition;
+        IOException failure = null;
 
         try {
-            final long[] page = new long[3];
+            if (null != segment) {
+                long position = startPosition;
+
+                try {
+                    for (int i = 0; i < count; i++) {
+                        context.payload(payloads[offset + i]);
+                        putMappedRecord(position, firstSequence + i, context);
+                        index(firstSequence + i, 1, position, context.timestamp);
+                        locate(locations, offset + i, firstSequence + i, position);
+                        position += RECORD_OVERHEAD + payloads[offset + i].remaining();
+                    }
+                } finally {
+                    context.clearPayload();
+                }
+
+                writtenBytes.addAndGet(batchSize);
+
+                if (sync) {
+                    headerChannel.force(false);
+                }
+
+                return;
+            }
+
+            final ByteBuffer meta = context.buffer(count * RECORD_OVERHEAD);
+            final ByteBuffer[] buffers = new ByteBuffer[count * 3];
 
-            page[0] = sequenceCounter.getAndIncrement();
-            page[1] = positionIndicator.addAndGet(length);
-            page[2] = System.currentTimeMillis();
+            for (int i = 0; i < count; i++) {
+                final ByteBuffer payload = payloads[offset + i].duplicate();
+                final int payloadStart = payload.position();
 
-            header.putLong(19, page[0]);
-            header.putLong(27, page[1]);
+                final RecordChecksum recordChecksum = RecordChecksum.get(checksum);
+                recordChecksum.update(payload);
+                payload.position(payloadStart);
 
-            return page;
+                final int headerStart = meta.position();
+                WriteContext.putRecordHeader(meta, payload.remaining(), firstSequence + i, context.timestamp, B_TRUE);
+                meta.putLong(recordChecksum.getValue()); // checksum
+
+                buffers[i * 3] = region(meta, headerStart, RECORD_HEADER_SIZE);
+                buffers[i * 3 + 1] = payload;
+                buffers[i * 3 + 2] = region(meta, headerStart + RECORD_HEADER_SIZE, RECORD_CHECKSUM_SIZE);
+            }
+
+            if (null != dataChannel) {
+                synchronized (dataChannel) {
+                    gatherFully(dataChannel, buffers, startPosition, batchSize);
+                }
+
+                if (sync) {
+                    dataChannel.force(false);
+                }
+            } else {
+                try (final FileChannel writeChannel = getFileChannel(false, path)) {
+                    gatherFully(writeChannel, buffers, startPosition, batchSize);
+
+                    if (sync) {
+                        writeChannel.force(false);
+                    }
+                }
+            }
+
+            long position = startPosition;
+
+            for (int i = 0; i < count; i++) {
+                index(firstSequence + i, 1, position, context.timestamp);
+                locate(locations, offset + i, firstSequence + i, position);
+                position += RECORD_OVERHEAD + payloads[offset + i].remaining();
+            }
+
+            writtenBytes.addAndGet(batchSize);
+        } catch (final IOException e) {
+            failure = e;
+            throw e;
         } finally {
-            allocationLock.unlock();
+            endWrite(failure);
+        }
+    }
+
+    private void locate(
+        final RecordLocation[] locations,
+        final int record,
+        final long sequence,
+        final long position
+    ) {
+        if (null != locations) {
+            locations[record] = new RecordLocation(fileSequence, sequence, position);
+        }
+    }
+
+    private void index(final long sequence, final int count, final long position, final long timestamp)
+        throws IOException {
+        if (null != index) {
+            index.record(sequence, count, position, timestamp);
+        }
+    }
+
+    private static ByteBuffer region(final ByteBuffer buffer, final int offset, final int length) {
+        final ByteBuffer region = buffer.duplicate();
+        region.limit(offset + length);
+        region.position(offset);
+        return region;
+    }
+
+    private static void gatherFully(
+        final FileChannel channel,
+        final ByteBuffer[] buffers,
+        final long position,
+        final long length
+    ) throws IOException {
+        channel.position(position);
+        long written = 0;
+
+        while (written < length) {
+            written += channel.write(buffers);
+        }
+    }
+
+    private static void writeFully(
+        final FileChannel channel,
+        final ByteBuffer buffer,
+        final long position
+    ) throws IOException {
+        long writePosition = position;
+
+        while (buffer.hasRemaining()) {
+            writePosition += channel.write(buffer, writePosition);
+        }
+    }
+
+    /**
+     * Reserves the region and sequences of a write, which must be ended with endWrite. A journal that is closing
+     * rejects the write with JournalFullException, so JournalDB retries it on the journal that replaced this one.
+     */
+    private void allocatePage(final long length, final int count, final WriteContext context) throws IOException {
+        activeWriters.incrementAndGet();
+
+        try {
+            reservePage(length, count, context);
+        } catch (final IOException | RuntimeException e) {
+            endWrite(null);
+            throw e;
+        }
+    }
+
+    /**
+     * Ends a write started by allocatePage. A failed write archives the journal, so no later write lands after a
+     * region that may not have been written.
+     */
+    private void endWrite(final IOException failure) {
+        if (0 == activeWriters.decrementAndGet() && closing) {
+            synchronized (activeWriters) {
+                activeWriters.notifyAll();
+            }
+        }
+
+        if (null != failure) {
+            try {
+                archiveAndClose();
+            } catch (final IOException e) {
+                failure.addSuppressed(e);
+            }
+        }
+    }
+
+    /**
+     * Reserves the records from the given offset on that fit into the rest of the journal, at least one, like
+     * allocatePage, and returns their number.
+     */
+    private int allocateRecords(final ByteBuffer[] payloads, final int offset, final WriteContext context)
+        throws IOException {
+        activeWriters.incrementAndGet();
+
+        try {
+            return reserveRecords(payloads, offset, context);
+        } catch (final IOException | RuntimeException e) {
+            endWrite(null);
+            throw e;
+        }
+    }
+
+    /**
+     * Rejects new writes and waits for the writes already holding a reservation to end.
+     */
+    private void awaitWriters() {
+        closing = true;
+        boolean interrupted = false;
+
+        synchronized (activeWriters) {
+            while (activeWriters.get() > 0) {
+                try {
+                    activeWriters.wait();
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Rejects a record that can not be written into any journal with IllegalArgumentException. Only mapped journals
+     * have such a limit, in the other modes a record larger than the journal max size fills an empty journal.
+     */
+    void checkPayloadSize(final long payloadSize) {
+        checkWriteSize(RECORD_OVERHEAD + payloadSize);
+    }
+
+    private void checkWriteSize(final long length) {
+        if (FILE_HEADER_SIZE + length > overfillLimit) {
+            throw new IllegalArgumentException("Record does not fit into an empty journal");
+        }
+    }
+
+    private void reservePage(final long length, final int count, final WriteContext context) throws IOException {
+        checkWriteSize(length);
+
+        if (closing || isPastDeadline()) {
+            throw new JournalFullException();
+        }
+
+        long tail;
+        long position;
+        long sequence;
+
+        do {
+            tail = allocationTail.get();
+            position = tail >>> SEQUENCE_BITS;
+            sequence = tail & SEQUENCE_MASK;
+
+            if (position + length > positionLimit && FILE_HEADER_SIZE != position || sequence + count > SEQUENCE_MASK) {
+                throw new JournalFullException();
+            }
+
+            if (sequence > 0 && sequence + count > recordLimit) {
+                throw new JournalFullException();
+            }
+        } while (!allocationTail.compareAndSet(tail, pack(position + length, sequence + count)));
+
+        reserved(context, sequence, position, length);
+    }
+
+    /**
+     * Reserves the longest run of records from the offset on that fits into the space and entry limits, or a single
+     * record that is larger than an empty journal.
+     */
+    private int reserveRecords(final ByteBuffer[] payloads, final int offset, final WriteContext context)
+        throws IOException {
+        checkWriteSize(RECORD_OVERHEAD + payloads[offset].remaining());
+
+        if (closing || isPastDeadline()) {
+            throw new JournalFullException();
+        }
+
+        long tail;
+        long position;
+        long sequence;
+        long length;
+        int count;
+
+        do {
+            tail = allocationTail.get();
+            position = tail >>> SEQUENCE_BITS;
+            sequence = tail & SEQUENCE_MASK;
+            length = 0;
+            count = 0;
+
+            while (offset + count < payloads.length && sequence + count < recordLimit) {
+                final long recordSize = RECORD_OVERHEAD + payloads[offset + count].remaining();
+
+                if (position + length + recordSize > positionLimit) {
+                    break;
+                }
+
+                length += recordSize;
+                count++;
+            }
+
+            if (0 == count) {
+                if (FILE_HEADER_SIZE != position || sequence >= recordLimit) {
+                    throw new JournalFullException();
+                }
+
+                length = RECORD_OVERHEAD + payloads[offset].remaining();
+                count = 1;
+            }
+        } while (!allocationTail.compareAndSet(tail, pack(position + length, sequence + count)));
+
+        reserved(context, sequence, position, length);
+        return count;
+    }
+
+    /**
+     * Stores a reservation in the context. The timestamp is read after the reservation, so a writer that reserved
+     * later can only get an earlier timestamp if it was preempted in between.
+     */
+    private void reserved(final WriteContext context, final long sequence, final long position, final long length) {
+        context.sequence = sequence;
+        context.startPosition = position;
+        context.endPosition = position + length;
+        context.timestamp = System.currentTimeMillis();
+
+        trackTimestamp(context.timestamp);
+    }
+
+    private boolean isPastDeadline() {
+        return Long.MAX_VALUE != rotationDeadline && System.currentTimeMillis() >= rotationDeadline;
+    }
+
+    /**
+     * Whether a write of the given size and number of records fits into the rest of the journal right now.
+     */
+    private boolean fits(final long length, final int count) {
+        final long tail = allocationTail.get();
+        return (tail >>> SEQUENCE_BITS) + length <= positionLimit && (tail & SEQUENCE_MASK) + count <= recordLimit;
+    }
+
+    private void trackTimestamp(final long timestamp) {
+        long current;
+
+        while (timestamp > (current = maxTimestamp.get()) && !maxTimestamp.compareAndSet(current, timestamp)) {
+            // Retry until this or a later timestamp is stored
+        }
+
+        while (timestamp < (current = minTimestamp.get()) && !minTimestamp.compareAndSet(current, timestamp)) {
+            // Retry until this or an earlier timestamp is stored
+        }
+    }
+
+    private static long pack(final long position, final long sequence) {
+        return position << SEQUENCE_BITS | sequence;
+    }
+
+    /**
+     * Stores the allocation tail in the header. The tail is also stored as the safe position for crash recovery when
+     * every record allocated before it has been written, which holds if the bytes written, read first, add up to it.
+     */
+    private void writeCheckpoint() {
+        final long written = writtenBytes.get();
+        final long tail = allocationTail.get();
+
+        header.putLong(19, tail & SEQUENCE_MASK);
+        header.putLong(27, tail >>> SEQUENCE_BITS);
+
+        if (openPosition + written == tail >>> SEQUENCE_BITS) {
+            header.putLong(53, tail >>> SEQUENCE_BITS);
+            header.putLong(61, tail & SEQUENCE_MASK);
+        }
+
+        final long maxRecordTimestamp = maxTimestamp.get();
+
+        if (0 != maxRecordTimestamp) {
+            header.putLong(35, minTimestamp.get());
+            header.putLong(43, maxRecordTimestamp);
+        }
+    }
+
+    void checkpoint() {
+        headerLock.lock();
+
+        try {
+            if (headerChannel.isOpen()) {
+                writeCheckpoint();
+            }
+        } finally {
+            headerLock.unlock();
         }
     }
 
     public void archiveAndClose() throws IOException {
-        allocationLock.lock();
+        awaitWriters();
+        headerLock.lock();
 
         try {
+            if (B_TRUE == header.get(1)) {
+                return; // Already archived by a failed write
+            }
+
+            writeCheckpoint();
             header.put(1, B_TRUE);
             header.putLong(11, System.currentTimeMillis());
             header.force();
-            headerChannel.close();
+
+            if (null != index && headerChannel.isOpen()) {
+                index.finish();
+            }
+
+            closeChannels();
         } finally {
-            allocationLock.unlock();
+            headerLock.unlock();
         }
     }
 
     @Override
     public void close() throws IOException {
-        allocationLock.lock();
+        awaitWriters();
+        headerLock.lock();
 
         try {
+            writeCheckpoint();
             header.put(2, B_TRUE);
             header.force();
-            headerChannel.close();
+            closeChannels();
+        } finally {
+            headerLock.unlock();
+        }
+    }
+
+    private void closeChannels() throws IOException {
+        try {
+            if (null != segment && headerChannel.isOpen()) {
+                headerChannel.truncate(allocationTail.get() >>> SEQUENCE_BITS);
+            }
+
+            if (null != dataChannel) {
+                dataChannel.close();
+            }
+
+            if (null != index) {
+                index.close();
+            }
         } finally {
-            allocationLock.unlock();
+            headerChannel.close();
         }
     }
 
     public void flush() {
-        allocationLock.lock();
+        headerLock.lock();
 
         try {
+            writeCheckpoint();
             header.force();
         } finally {
-            allocationLock.unlock();
+            headerLock.unlock();
         }
     }
 
     public long size() throws IOException {
+        if (null != segment) {
+            return allocationTail.get() >>> SEQUENCE_BITS;
+        }
+
         return headerChannel.size();
     }
 
+    long position() {
+        return allocationTail.get() >>> SEQUENCE_BITS;
+    }
+
+    long fileSequence() {
+        return fileSequence;
+    }
+
+    boolean isArchived() {
+        return B_TRUE == header.get(1);
+    }
+
+    long createdAt() {
+        return header.getLong(3);
+    }
+
+    /**
+     * Restamps the creation time of a journal created ahead of being written to.
+     */
+    void activate() {
+        header.putLong(3, System.currentTimeMillis());
+    }
+
+    /**
+     * Rejects writes with JournalFullException once the journal holds the given number of entries or the deadline
+     * has passed. Set before the journal is published to writers.
+     */
+    void setRotationLimits(final long maxRecords, final long deadline) {
+        this.recordLimit = maxRecords > 0 ? Math.min(maxRecords, SEQUENCE_MASK) : SEQUENCE_MASK;
+        this.rotationDeadline = deadline;
+    }
+
+    /**
+     * Whether the journal has entries and its rotation deadline has passed.
+     */
+    boolean isRotationDue(final long timestamp) {
+        return timestamp >= rotationDeadline && position() > FILE_HEADER_SIZE;
+    }
+
+    long archivedAt() {
+        return header.getLong(11);
+    }
+
+    /**
+     * Earliest record timestamp, 0 if no records have been written.
+     */
+    long minTimestamp() {
+        return 0 != maxTimestamp.get() ? minTimestamp.get() : 0;
+    }
+
+    long maxTimestamp() {
+        return maxTimestamp.get();
+    }
+
     public long sequence() {
-        return sequenceCounter.get();
+        return allocationTail.get() & SEQUENCE_MASK;
     }
 }
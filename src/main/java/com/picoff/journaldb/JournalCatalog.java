@@ -0,0 +1,178 @@
+package com.picoff.journaldb;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.CRC32;
+
+/**
+ * Metadata of all journals of a {@link JournalDB}, kept in memory and in a file with a fixed size slot per file
+ * sequence. Slots are checksummed, so a torn slot write only loses the update being written.
+ */
+final class JournalCatalog implements Closeable {
+    static final byte CATALOG_MAGIC_BYTE = (byte) 'c';
+    static final int HEADER_SIZE = 16;
+    static final int SLOT_SIZE = 96;
+    private static final byte SLOT_ACTIVE = (byte) 1;
+    private static final byte SLOT_ARCHIVED = (byte) 2;
+
+    private final FileChannel channel;
+    private final ConcurrentSkipListMap<Long, JournalCatalogEntry> entries = new ConcurrentSkipListMap<>();
+    private final ByteBuffer slot = ByteBuffer.allocate(SLOT_SIZE);
+    private final CRC32 crc32 = new CRC32();
+    private final boolean isNew;
+
+    JournalCatalog(final File file) throws IOException {
+        this.channel = FileChannel.open(
+            file.toPath(),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE
+        );
+
+        try {
+            this.isNew = 0 == channel.size();
+
+            if (isNew) {
+                final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.put(CATALOG_MAGIC_BYTE);
+                header.putInt(SLOT_SIZE);
+                header.clear();
+                writeFully(header, 0);
+                channel.force(true);
+            } else {
+                load();
+            }
+        } catch (final IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void load() throws IOException {
+        final long size = channel.size();
+
+        if (size < HEADER_SIZE || size - HEADER_SIZE > Integer.MAX_VALUE) {
+            throw new IOException("Invalid journal catalog size " + size);
+        }
+
+        final ByteBuffer catalog = ByteBuffer.allocate((int) size);
+
+        while (catalog.hasRemaining() && channel.read(catalog, catalog.position()) >= 0) {
+            // Read the whole catalog at once
+        }
+
+        if (CATALOG_MAGIC_BYTE != catalog.get(0) || SLOT_SIZE != catalog.getInt(1)) {
+            throw new IOException("Invalid journal catalog header");
+        }
+
+        for (int offset = HEADER_SIZE; offset + SLOT_SIZE <= catalog.position(); offset += SLOT_SIZE) {
+            final byte state = catalog.get(offset);
+            final boolean isValid = (SLOT_ACTIVE == state || SLOT_ARCHIVED == state)
+                && checksum(catalog, offset) == catalog.getLong(offset + SLOT_SIZE - 8);
+
+            if (!isValid) {
+                continue;
+            }
+
+            final JournalCatalogEntry entry = new JournalCatalogEntry(
+                catalog.getLong(offset + 8),
+                SLOT_ARCHIVED == state,
+                catalog.getLong(offset + 16),
+                catalog.getLong(offset + 24),
+                catalog.getLong(offset + 32),
+                catalog.getLong(offset + 40),
+                catalog.getLong(offset + 48),
+                catalog.getLong(offset + 56),
+                catalog.getLong(offset + 64),
+                catalog.getLong(offset + 72)
+            );
+
+            entries.put(entry.getFileSequence(), entry);
+        }
+    }
+
+    /**
+     * Whether the catalog file did not exist before, so the entries of existing journals are missing.
+     */
+    boolean isNew() {
+        return isNew;
+    }
+
+    JournalCatalogEntry get(final long fileSequence) {
+        return entries.get(fileSequence);
+    }
+
+    /**
+     * Entries in file sequence order.
+     */
+    Collection<JournalCatalogEntry> entries() {
+        return entries.values();
+    }
+
+    synchronized void put(final JournalCatalogEntry entry) throws IOException {
+        slot.clear();
+        slot.put(entry.isArchived() ? SLOT_ARCHIVED : SLOT_ACTIVE);
+        slot.position(8);
+        slot.putLong(entry.getFileSequence());
+        slot.putLong(entry.getCreatedAt());
+        slot.putLong(entry.getArchivedAt());
+        slot.putLong(entry.getFirstSequence());
+        slot.putLong(entry.getRecordCount());
+        slot.putLong(entry.getSize());
+        slot.putLong(entry.getProcessedCount());
+        slot.putLong(entry.getMinTimestamp());
+        slot.putLong(entry.getMaxTimestamp());
+        slot.putLong(0L); // reserved
+        slot.putLong(checksum(slot, 0));
+        slot.flip();
+
+        writeFully(slot, slotPosition(entry.getFileSequence()));
+        channel.force(false);
+
+        entries.put(entry.getFileSequence(), entry);
+    }
+
+    synchronized void remove(final long fileSequence) throws IOException {
+        writeFully(ByteBuffer.allocate(SLOT_SIZE), slotPosition(fileSequence));
+        channel.force(false);
+
+        entries.remove(fileSequence);
+    }
+
+    private static long slotPosition(final long fileSequence) {
+        return HEADER_SIZE + fileSequence * SLOT_SIZE;
+    }
+
+    private long checksum(final ByteBuffer buffer, final int offset) {
+        final ByteBuffer fields = buffer.duplicate();
+        fields.limit(offset + SLOT_SIZE - 8);
+        fields.position(offset);
+
+        crc32.reset();
+        crc32.update(fields);
+        return crc32.getValue();
+    }
+
+    private void writeFully(final ByteBuffer buffer, final long position) throws IOException {
+        long writePosition = position;
+
+        while (buffer.hasRemaining()) {
+            writePosition += channel.write(buffer, writePosition);
+        }
+    }
+
+    boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
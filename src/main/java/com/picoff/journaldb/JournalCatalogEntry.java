@@ -0,0 +1,168 @@
+package com.picoff.journaldb;
+
+/**
+ * Cached metadata of one journal of a {@link JournalDB}.
+ */
+public class JournalCatalogEntry {
+    private final long fileSequence;
+    private final boolean isArchived;
+    private final long createdAt;
+    private final long archivedAt;
+    private final long firstSequence;
+    private final long recordCount;
+    private final long size;
+    private final long processedCount;
+    private final long minTimestamp;
+    private final long maxTimestamp;
+
+    JournalCatalogEntry(
+        final long fileSequence,
+        final boolean isArchived,
+        final long createdAt,
+        final long archivedAt,
+        final long firstSequence,
+        final long recordCount,
+        final long size,
+        final long processedCount,
+        final long minTimestamp,
+        final long maxTimestamp
+    ) {
+        this.fileSequence = fileSequence;
+        this.isArchived = isArchived;
+        this.createdAt = createdAt;
+        this.archivedAt = archivedAt;
+        this.firstSequence = firstSequence;
+        this.recordCount = recordCount;
+        this.size = size;
+        this.processedCount = processedCount;
+        this.minTimestamp = minTimestamp;
+        this.maxTimestamp = maxTimestamp;
+    }
+
+    static JournalCatalogEntry of(final Journal journal) {
+        final long sequence = journal.sequence();
+
+        return new JournalCatalogEntry(
+            journal.fileSequence(),
+            journal.isArchived(),
+            journal.createdAt(),
+            journal.archivedAt(),
+            0,
+            sequence,
+            journal.position(),
+            -1,
+            journal.minTimestamp(),
+            journal.maxTimestamp()
+        );
+    }
+
+    static JournalCatalogEntry of(final long fileSequence, final JournalMetadata metadata) {
+        return new JournalCatalogEntry(
+            fileSequence,
+            metadata.isArchived(),
+            metadata.getCreatedAt(),
+            metadata.getArchivedAt(),
+            0,
+            metadata.getSequence(),
+            metadata.getPosition(),
+            -1,
+            metadata.getMinTimestamp(),
+            metadata.getMaxTimestamp()
+        );
+    }
+
+    JournalCatalogEntry withProcessedCount(final long processedCount) {
+        return new JournalCatalogEntry(
+            fileSequence,
+            isArchived,
+            createdAt,
+            archivedAt,
+            firstSequence,
+            recordCount,
+            size,
+            processedCount,
+            minTimestamp,
+            maxTimestamp
+        );
+    }
+
+    JournalCatalogEntry withRecords(final long firstSequence, final long recordCount, final long size) {
+        return new JournalCatalogEntry(
+            fileSequence,
+            isArchived,
+            createdAt,
+            archivedAt,
+            firstSequence,
+            recordCount,
+            size,
+            processedCount,
+            minTimestamp,
+            maxTimestamp
+        );
+    }
+
+    public long getFileSequence() {
+        return fileSequence;
+    }
+
+    public boolean isArchived() {
+        return isArchived;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Time the journal was archived at, 0 while it is active.
+     */
+    public long getArchivedAt() {
+        return archivedAt;
+    }
+
+    /**
+     * Sequence of the first record, greater than 0 once processed records at the start have been compacted away.
+     */
+    public long getFirstSequence() {
+        return firstSequence;
+    }
+
+    /**
+     * Sequence of the last record, one less than the first sequence if the journal has no records.
+     */
+    public long getLastSequence() {
+        return firstSequence + recordCount - 1;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Size of the journal in bytes, up to the end of its last record.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Number of processed records as of the last retention scan, -1 if the journal has not been scanned.
+     */
+    public long getProcessedCount() {
+        return processedCount;
+    }
+
+    /**
+     * Earliest record timestamp in the journal, 0 if unknown.
+     */
+    public long getMinTimestamp() {
+        return minTimestamp;
+    }
+
+    /**
+     * Latest record timestamp in the journal, 0 if unknown.
+     */
+    public long getMaxTimestamp() {
+        return maxTimestamp;
+    }
+}
@@ -0,0 +1,18 @@
+package com.picoff.journaldb;
+
+public enum JournalChecksum {
+    /**
+     * CRC-32 of the record payload.
+     */
+    CRC32,
+
+    /**
+     * CRC-32C of the record payload, computed with hardware instructions on Java 9 and later.
+     */
+    CRC32C,
+
+    /**
+     * Records are not checksummed, only the record headers are checked on read.
+     */
+    NONE
+}
@@ -0,0 +1,13 @@
+package com.picoff.journaldb;
+
+public enum JournalCompression {
+    /**
+     * Records are stored as written.
+     */
+    NONE,
+
+    /**
+     * Records written together in a batch are stored as one deflate compressed block.
+     */
+    DEFLATE
+}
@@ -0,0 +1,338 @@
+package com.picoff.journaldb;
+
+import com.picoff.journaldb.exception.RecordChecksumException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Iterates records of all journals of a {@link JournalDB} in order, from archived journals into the active one.
+ * Records of the active journal are returned once they are completely written.
+ */
+public class JournalCursor implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JournalCursor.class);
+    private static final EntryReadOptions BLOCK_READ_OPTIONS = new EntryReadOptions();
+
+    private final JournalDB journalDB;
+    private final int bufferSize;
+    private final BlockInflater inflater = new BlockInflater();
+    private final ArrayDeque<JournalEntry> blockEntries = new ArrayDeque<>();
+    private final ExecutorService prefetcher = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "jdb-cursor-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private CursorFile current;
+    private Future<CursorFile> prefetched;
+    private long fileSequence;
+    private long offset;
+    private long blockEnd;
+
+    JournalCursor(
+        final JournalDB journalDB,
+        final JournalCursorPosition position,
+        final int bufferSize
+    ) {
+        this.journalDB = journalDB;
+        this.bufferSize = bufferSize;
+        this.fileSequence = position.getFileSequence();
+        this.offset = position.getOffset();
+    }
+
+    /**
+     * Returns the next record, or null if no further records are available yet.
+     */
+    public JournalEntry next() throws IOException {
+        while (true) {
+            if (!blockEntries.isEmpty()) {
+                return pollBlockEntry();
+            }
+
+            if (null == current) {
+                final long existingSequence = nextExistingSequence(fileSequence);
+
+                if (existingSequence != fileSequence) {
+                    fileSequence = existingSequence;
+                    offset = Journal.FILE_HEADER_SIZE;
+                }
+
+                current = open(fileSequence);
+
+                if (null == current) {
+                    return null;
+                }
+
+                prefetchNext();
+            }
+
+            JournalEntry entry = read(false);
+
+            if (null != entry) {
+                return entry;
+            }
+
+            if (!journalDB.isJournalFinished(fileSequence)) {
+                return null;
+            }
+
+            // Records may have landed between the read and the journal being archived
+            entry = read(true);
+
+            if (null != entry) {
+                return entry;
+            }
+
+            advance();
+        }
+    }
+
+    /**
+     * Position after the last returned record, to resume a cursor from with {@link JournalDB#openCursor}. While
+     * records of a compressed block are being returned the position stays in front of the block, so a resumed cursor
+     * returns the block's records again.
+     */
+    public JournalCursorPosition position() {
+        return new JournalCursorPosition(fileSequence, offset);
+    }
+
+    private JournalEntry read(final boolean finished) throws IOException {
+        final RecordScanner scanner = current.scanner;
+        scanner.seek(offset);
+
+        if (!scanner.hasRemaining()) {
+            return null;
+        }
+
+        try {
+            scanner.readHeader();
+
+            if (finished && Journal.RECORD_MAGIC_BYTE == scanner.magicByte && Journal.B_TRUE != scanner.integrityFlag
+                && scanner.dataSize >= 0) {
+                // A record of a finished journal that was never confirmed, the records after it are still intact
+                LOGGER.warn("Skipping unconfirmed record of journal {} at {}", current.path, offset);
+
+                offset = scanner.recordEnd();
+                return read(true);
+            }
+
+            if (Journal.RECORD_MAGIC_BYTE != scanner.magicByte || Journal.B_TRUE != scanner.integrityFlag) {
+                // Not written yet, or in a finished journal never completely written, for example the zero filled
+                // tail of a memory mapped journal left behind by a crash
+                if (finished) {
+                    LOGGER.warn(
+                        "Journal {} ends with an incomplete record at {}, continuing with the next journal",
+                        current.path,
+                        offset
+                    );
+                }
+
+                scanner.reset(offset);
+                return null;
+            }
+
+            final byte[] data = new byte[scanner.dataSize];
+            scanner.readData(data);
+
+            final long checksum = scanner.readLong();
+
+            final RecordChecksum computed = RecordChecksum.get(current.checksum);
+            computed.update(data, 0, data.length);
+
+            if (computed.getValue() != checksum) {
+                if (finished) {
+                    throw new RecordChecksumException(scanner.position());
+                }
+
+                scanner.reset(offset);
+                return null;
+            }
+
+            if (scanner.isVoid()) {
+                offset = scanner.position();
+                return read(finished);
+            }
+
+            final JournalEntry entry = JournalReader.createEntry(scanner, data, checksum, current.path, null);
+
+            if (!scanner.isBlock()) {
+                offset = scanner.position();
+                return entry;
+            }
+
+            blockEnd = scanner.position();
+            JournalReader.readBlock(
+                scanner,
+                entry,
+                inflater,
+                BLOCK_READ_OPTIONS,
+                current.path,
+                null,
+                blockEntries::add
+            );
+
+            final JournalEntry blockEntry = pollBlockEntry();
+
+            return null != blockEntry ? blockEntry : read(finished);
+        } catch (final EOFException e) {
+            scanner.reset(offset);
+            return null;
+        }
+    }
+
+    private JournalEntry pollBlockEntry() {
+        final JournalEntry entry = blockEntries.poll();
+
+        if (blockEntries.isEmpty()) {
+            offset = blockEnd;
+        }
+
+        return entry;
+    }
+
+    private void advance() throws IOException {
+        final long nextSequence = nextExistingSequence(fileSequence + 1);
+        final CursorFile next = null != prefetched ? awaitPrefetched() : null;
+
+        current.close();
+        current = null;
+        fileSequence = nextSequence;
+        offset = Journal.FILE_HEADER_SIZE;
+
+        if (null == next) {
+            return;
+        }
+
+        if (next.fileSequence == nextSequence) {
+            current = next;
+            prefetchNext();
+        } else {
+            next.close();
+        }
+    }
+
+    private CursorFile awaitPrefetched() throws IOException {
+        final Future<CursorFile> future = prefetched;
+        prefetched = null;
+
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private void prefetchNext() {
+        if (null != prefetched || !journalDB.isJournalFinished(fileSequence)) {
+            return;
+        }
+
+        final long nextSequence = nextExistingSequence(fileSequence + 1);
+
+        prefetched = prefetcher.submit(() -> {
+            final CursorFile file = open(nextSequence);
+
+            if (null != file) {
+                file.scanner.fill();
+            }
+
+            return file;
+        });
+    }
+
+    private long nextExistingSequence(final long from) {
+        long sequence = from;
+
+        while (sequence < journalDB.getSequence() && !journalDB.getJournalFile(sequence).isFile()) {
+            sequence++;
+        }
+
+        return sequence;
+    }
+
+    private CursorFile open(final long sequence) throws IOException {
+        final File file = journalDB.getJournalFile(sequence);
+
+        if (!file.isFile()) {
+            return null;
+        }
+
+        return new CursorFile(sequence, file.getAbsoluteFile().toPath(), bufferSize);
+    }
+
+    @Override
+    public void close() throws IOException {
+        final List<Runnable> notStarted = prefetcher.shutdownNow();
+        inflater.close();
+
+        try {
+            // A prefetch that had not started is dropped by shutdownNow and would never complete
+            if (null != prefetched && !notStarted.contains(prefetched)) {
+                final CursorFile next = awaitPrefetched();
+
+                if (null != next) {
+                    next.close();
+                }
+            }
+        } catch (final IOException e) {
+            // The prefetched journal is discarded
+        } finally {
+            if (null != current) {
+                current.close();
+                current = null;
+            }
+        }
+    }
+
+    private static final class CursorFile implements Closeable {
+        private final long fileSequence;
+        private final Path path;
+        private final FileChannel channel;
+        private final RecordScanner scanner;
+        private final JournalChecksum checksum;
+
+        private CursorFile(final long fileSequence, final Path path, final int bufferSize) throws IOException {
+            this.fileSequence = fileSequence;
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+
+            try {
+                final ByteBuffer algorithm = ByteBuffer.allocate(1);
+                channel.read(algorithm, 52);
+
+                this.checksum = algorithm.hasRemaining() ? JournalChecksum.CRC32 : Journal.checksum(algorithm.get(0));
+                this.scanner = new RecordScanner(channel, bufferSize);
+                this.scanner.seek(Journal.FILE_HEADER_SIZE);
+            } catch (final IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
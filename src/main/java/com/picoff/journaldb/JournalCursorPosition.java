@@ -0,0 +1,22 @@
+package com.picoff.journaldb;
+
+public class JournalCursorPosition {
+    private final long fileSequence;
+    private final long offset;
+
+    public JournalCursorPosition(
+        final long fileSequence,
+        final long offset
+    ) {
+        this.fileSequence = fileSequence;
+        this.offset = offset;
+    }
+
+    public long getFileSequence() {
+        return fileSequence;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+}
@@ -16,44 +16,69 @@
 
 package com.picoff.journaldb;
 
+import com.picoff.commons.functional.Handler;
 import com.picoff.journaldb.exception.DatabaseDirectoryIsAFileException;
 import com.picoff.journaldb.exception.DatabaseLockedException;
+import com.picoff.journaldb.exception.JournalFullException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 
 public class JournalDB implements Closeable {
-    private static final long RELOCATE_PARK_TIME_NS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long MONITOR_PARK_TIME_NS = TimeUnit.MILLISECONDS.toNanos(50);
     private static final Logger LOGGER = LoggerFactory.getLogger(JournalDB.class);
+    private static final JournalReaderOptions METADATA_READ_OPTIONS = new JournalReaderOptions()
+        .setFailOnNotArchived(false)
+        .setFailOnNotClosedGracefully(false);
     private final JournalDBOptions options;
+    private final File dataDirectory;
     private final FileChannel metaChannel;
     private final FileLock metaLock;
     private final MappedByteBuffer metadata;
     private final AtomicReference<Journal> currentJournal = new AtomicReference<>();
+    private final Object standbyLock = new Object();
+    private Journal standbyJournal;
+    private final AtomicBoolean closed = new AtomicBoolean();
     private final AtomicLong fileSequence = new AtomicLong(-1);
     private final ReentrantLock metaWriteLock = new ReentrantLock();
     private final double maxJournalSizeBytes;
-    private final Thread relocateMonitor;
+    private final long rotationInterval;
+    private final Thread monitor;
+    private final GroupCommitter groupCommitter;
+    private final WriteSignal writeSignal = new WriteSignal();
+    private final ConsumerOffsets consumerOffsets;
+    private final JournalCatalog catalog;
+    private final RetentionService retentionService;
 
     public JournalDB(final JournalDBOptions options) throws IOException {
+        this(options, options.getDataDirectory());
+    }
+
+    JournalDB(final JournalDBOptions options, final File dataDirectory) throws IOException {
         this.options = options;
+        this.dataDirectory = dataDirectory;
 
         this.maxJournalSizeBytes = options.getJournalMaxSizeUnit().toBytes(options.getJournalMaxSize());
-
-        final File dataDirectory = options.getDataDirectory();
+        this.rotationInterval = options.getRotationPolicy().getIntervalUnit()
+            .toMillis(options.getRotationPolicy().getInterval());
 
         if (dataDirectory.exists() && dataDirectory.isFile()) {
             throw new DatabaseDirectoryIsAFileException();
@@ -87,62 +112,247 @@ public class JournalDB implements Closeable {
             0, 100
         );
 
+        this.consumerOffsets = new ConsumerOffsets(new File(dataDirectory, "journal_offsets"));
+        this.catalog = new JournalCatalog(new File(dataDirectory, "journal_catalog"));
+
         if (isNewDatabase) {
             currentJournal.set(createJournal());
         } else {
             loadPreviousJournal(options);
+            refreshCatalog();
         }
 
-        this.relocateMonitor = maxJournalSizeBytes != 0
-            ? new Thread(this::relocateMonitorWork)
+        this.monitor = new Thread(this::monitorWork);
+        this.monitor.setName("jdb-monitor");
+        this.monitor.start();
+
+        final long groupCommitMaxSize = (long) options.getGroupCommitMaxSizeUnit()
+            .toBytes(options.getGroupCommitMaxSize());
+
+        // A batch never needs more than an empty journal, larger ones are split between journals anyway
+        this.groupCommitter = options.groupCommit()
+            ? new GroupCommitter(
+                this::writeGroup,
+                options.getGroupCommitWindowUnit().toNanos(options.getGroupCommitWindow()),
+                maxJournalSizeBytes > 0
+                    ? Math.min(groupCommitMaxSize, (long) maxJournalSizeBytes - Journal.FILE_HEADER_SIZE)
+                    : groupCommitMaxSize
+            )
+            : null;
+
+        this.retentionService = null != options.getRetentionOptions()
+            ? new RetentionService(this, options.getRetentionOptions())
             : null;
 
-        if (null != relocateMonitor) {
-            relocateMonitor.setName("jdb-monitor");
-            relocateMonitor.start();
+        if (null != retentionService) {
+            retentionService.start();
         }
     }
 
     public void write(final byte[] bytes) throws IOException {
-        if (maxJournalSizeBytes > 0 && currentJournal.get().size() > maxJournalSizeBytes) {
-            LockSupport.unpark(relocateMonitor);
+        writeToJournal(journal -> journal.write(bytes));
+    }
+
+    private void writeToJournal(final JournalWrite write) throws IOException {
+        while (true) {
+            final Journal journal = currentJournal.get();
+
+            try {
+                write.write(journal);
+                writeSignal.signal();
+                return;
+            } catch (final JournalFullException e) {
+                relocateFull(journal);
+            } catch (final IOException e) {
+                onWriteFailure(journal, e);
+                return;
+            }
         }
+    }
 
-        try {
-            currentJournal.get().write(bytes);
-        } catch (final IOException e) {
-            onWriteFailure(e);
+    /**
+     * Writes the records from the offset on that fit into the active journal, relocating first if it is full, stores
+     * their locations and returns their number. Failures are rethrown even when relocating on them.
+     */
+    int appendBatch(
+        final ByteBuffer[] payloads,
+        final int offset,
+        final boolean sync,
+        final RecordLocation[] locations
+    ) throws IOException {
+        return appendToJournal(payloads, offset, sync, locations, true);
+    }
+
+    /**
+     * Returns the number of records written, or of all remaining records if a failure was swallowed while relocating.
+     */
+    private int appendToJournal(
+        final ByteBuffer[] payloads,
+        final int offset,
+        final boolean sync,
+        final RecordLocation[] locations,
+        final boolean rethrow
+    ) throws IOException {
+        while (true) {
+            final Journal journal = currentJournal.get();
+
+            try {
+                final int count = journal.append(payloads, offset, sync, locations);
+                writeSignal.signal();
+                return count;
+            } catch (final JournalFullException e) {
+                relocateFull(journal);
+            } catch (final IOException e) {
+                onWriteFailure(journal, e);
+
+                if (rethrow) {
+                    throw e;
+                }
+
+                return payloads.length - offset;
+            }
         }
     }
 
-    private synchronized void onWriteFailure(final IOException e) throws IOException {
+    /**
+     * Relocates away from a journal that rejected a write, unless another writer already did. Writers that find the
+     * journal replaced retry right away instead of waiting for it to be archived.
+     */
+    private void relocateFull(final Journal journal) throws IOException {
+        if (currentJournal.get() != journal) {
+            return;
+        }
+
+        synchronized (this) {
+            if (closed.get()) {
+                throw new IOException("JournalDB is closed");
+            }
+
+            if (currentJournal.get() == journal) {
+                relocate();
+            }
+        }
+    }
+
+    /**
+     * Not synchronized, since closing waits for the monitor and group commit threads, which may be waiting to
+     * relocate.
+     */
+    private void onWriteFailure(final Journal journal, final IOException e) throws IOException {
         if (options.relocateOnWriteFailure()) {
             LOGGER.warn("Write failure", e);
-            relocate();
+            relocateFull(journal);
         } else {
             close();
             throw e;
         }
     }
 
-    public long relocate() throws IOException {
+    public synchronized long relocate() throws IOException {
         final long oldSequence = getSequence();
         final Journal oldJournal = currentJournal.get();
-        currentJournal.set(createJournal());
+        currentJournal.set(activateStandbyJournal());
+        LockSupport.unpark(monitor);
         oldJournal.archiveAndClose();
+        catalog.put(JournalCatalogEntry.of(oldJournal));
+        writeSignal.signal();
         return oldSequence;
     }
 
+    /**
+     * Takes over the journal prepared by the monitor thread, or creates one if it is not ready yet.
+     */
+    private Journal activateStandbyJournal() throws IOException {
+        synchronized (standbyLock) {
+            final Journal standby = standbyJournal;
+            standbyJournal = null;
+
+            if (null == standby) {
+                return createJournal();
+            }
+
+            allocateFileSequence();
+            standby.activate();
+            scheduleRotation(standby);
+            catalog.put(JournalCatalogEntry.of(standby));
+            return standby;
+        }
+    }
+
+    /**
+     * Creates the journal following the active one without allocating its file sequence, so it can be swapped in
+     * without creating or mapping a file on the write path.
+     */
+    private void prepareStandbyJournal() throws IOException {
+        synchronized (standbyLock) {
+            if (null == standbyJournal && !closed.get()) {
+                standbyJournal = openJournal(getSequence() + 1);
+            }
+        }
+    }
+
+    private void closeStandbyJournal() throws IOException {
+        synchronized (standbyLock) {
+            if (null != standbyJournal) {
+                standbyJournal.close();
+                standbyJournal = null;
+                deleteStandbyJournal(getSequence() + 1);
+            }
+        }
+    }
+
+    /**
+     * Deletes a standby journal left behind by a crash. It has no entries since writes only reach a journal after
+     * its file sequence is allocated.
+     */
+    private void deleteStandbyJournal(final long journalSequence) throws IOException {
+        final File journalFile = getJournalFile(journalSequence);
+
+        if (!journalFile.isFile()) {
+            return;
+        }
+
+        try (final JournalReader reader = new JournalReader(METADATA_READ_OPTIONS, journalFile)) {
+            if (0 != reader.getMetadata().getSequence()) {
+                LOGGER.warn("Journal {} after the active journal has entries, leaving it in place", journalFile);
+                return;
+            }
+        }
+
+        Files.deleteIfExists(journalFile.toPath());
+        Files.deleteIfExists(JournalIndex.indexFile(journalFile).toPath());
+        Files.deleteIfExists(ProcessedStateBitmap.bitmapFile(journalFile).toPath());
+    }
+
     @Override
     public void close() throws IOException {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+
         try {
-            if (relocateMonitor != null) {
-                relocateMonitor.interrupt();
+            stopMonitor();
+
+            if (groupCommitter != null) {
+                groupCommitter.close();
+            }
+
+            if (null != retentionService) {
+                retentionService.close();
             }
+
+            closeStandbyJournal();
         } finally {
             try {
-                currentJournal.get().close();
+                final Journal journal = currentJournal.get();
+                journal.close();
+
+                if (catalog.isOpen()) {
+                    catalog.put(JournalCatalogEntry.of(journal));
+                }
             } finally {
+                catalog.close();
+                consumerOffsets.close();
                 metaLock.close();
                 metaChannel.close();
             }
@@ -154,8 +364,85 @@ public class JournalDB implements Closeable {
     }
 
     private Journal createJournal() throws IOException {
-        final long fileSequence = allocateFileSequence();
-        return new Journal(getJournalFile(fileSequence));
+        final Journal journal = openJournal(allocateFileSequence());
+        catalog.put(JournalCatalogEntry.of(journal));
+        return journal;
+    }
+
+    /**
+     * Adds journals missing from a catalog that did not exist yet, and refreshes catalog entries of journals left
+     * behind without being archived. Other journals are not opened.
+     */
+    private void refreshCatalog() throws IOException {
+        final long activeSequence = getSequence();
+
+        if (catalog.isNew()) {
+            for (long journalSequence = 0; journalSequence < activeSequence; journalSequence++) {
+                refreshCatalogEntry(journalSequence);
+            }
+        } else {
+            for (final JournalCatalogEntry entry : new ArrayList<>(catalog.entries())) {
+                if (!entry.isArchived() && entry.getFileSequence() != activeSequence) {
+                    refreshCatalogEntry(entry.getFileSequence());
+                }
+            }
+        }
+
+        catalog.put(JournalCatalogEntry.of(currentJournal.get()));
+    }
+
+    private void refreshCatalogEntry(final long journalSequence) throws IOException {
+        final File journalFile = getJournalFile(journalSequence);
+
+        if (!journalFile.isFile()) {
+            if (null != catalog.get(journalSequence)) {
+                catalog.remove(journalSequence);
+            }
+
+            return;
+        }
+
+        try (final JournalReader reader = new JournalReader(METADATA_READ_OPTIONS, journalFile)) {
+            catalog.put(JournalCatalogEntry.of(journalSequence, reader.getMetadata()));
+        } catch (final IOException e) {
+            LOGGER.warn("Failed to read journal {} into the catalog", journalFile, e);
+        }
+    }
+
+    /**
+     * Metadata of all journals in file sequence order, served from the catalog without opening any journal. The entry
+     * of the active journal reflects its current state.
+     */
+    public List<JournalCatalogEntry> getCatalog() {
+        final Journal active = currentJournal.get();
+        final List<JournalCatalogEntry> entries = new ArrayList<>();
+
+        for (final JournalCatalogEntry entry : catalog.entries()) {
+            entries.add(entry.getFileSequence() == active.fileSequence() ? JournalCatalogEntry.of(active) : entry);
+        }
+
+        return entries;
+    }
+
+    /**
+     * Catalog entry of a journal, null if the journal does not exist.
+     */
+    public JournalCatalogEntry getCatalogEntry(final long fileSequence) {
+        final Journal active = currentJournal.get();
+
+        if (fileSequence == active.fileSequence()) {
+            return JournalCatalogEntry.of(active);
+        }
+
+        return catalog.get(fileSequence);
+    }
+
+    JournalCatalog catalog() {
+        return catalog;
+    }
+
+    ConsumerOffsets consumerOffsets() {
+        return consumerOffsets;
     }
 
     private long allocateFileSequence() {
@@ -169,8 +456,8 @@ public class JournalDB implements Closeable {
         }
     }
 
-    private File getJournalFile(final long fileSequence) {
-        return new File(options.getDataDirectory(), generateJournalName(fileSequence));
+    File getJournalFile(final long fileSequence) {
+        return new File(dataDirectory, generateJournalName(fileSequence));
     }
 
     private String generateJournalName(final long fileSequence) {
@@ -178,15 +465,81 @@ public class JournalDB implements Closeable {
     }
 
     public void write(final byte[] bytes, final boolean sync) throws IOException {
-        if (maxJournalSizeBytes > 0 && currentJournal.get().size() > maxJournalSizeBytes) {
-            LockSupport.unpark(relocateMonitor);
+        if (sync && null != groupCommitter) {
+            currentJournal.get().checkPayloadSize(bytes.length);
+            groupCommitter.write(ByteBuffer.wrap(bytes));
+            return;
         }
 
-        try {
-            currentJournal.get().write(bytes, sync);
-        } catch (final IOException e) {
-            onWriteFailure(e);
+        writeToJournal(journal -> journal.write(bytes, sync));
+    }
+
+    public void write(final ByteBuffer payload) throws IOException {
+        write(payload, false);
+    }
+
+    public void write(final ByteBuffer payload, final boolean sync) throws IOException {
+        if (sync && null != groupCommitter) {
+            currentJournal.get().checkPayloadSize(payload.remaining());
+            groupCommitter.write(payload.duplicate());
+            return;
+        }
+
+        writeToJournal(journal -> journal.write(payload, sync));
+    }
+
+    public void write(final int size, final Handler<ByteBuffer> encoder) throws IOException {
+        write(size, encoder, false);
+    }
+
+    public void write(final int size, final Handler<ByteBuffer> encoder, final boolean sync) throws IOException {
+        if (sync && null != groupCommitter) {
+            currentJournal.get().checkPayloadSize(size);
+            final ByteBuffer payload = ByteBuffer.allocate(size);
+            encoder.handle(payload.duplicate());
+            groupCommitter.write(payload);
+            return;
+        }
+
+        writeToJournal(journal -> journal.write(size, encoder, sync));
+    }
+
+    public void writeBatch(final List<byte[]> payloads) throws IOException {
+        writeBatch(payloads, false);
+    }
+
+    public void writeBatch(final List<byte[]> payloads, final boolean sync) throws IOException {
+        final ByteBuffer[] buffers = new ByteBuffer[payloads.size()];
+
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.wrap(payloads.get(i));
         }
+
+        writeBatch(buffers, sync);
+    }
+
+    public void writeBatch(final ByteBuffer[] payloads) throws IOException {
+        writeBatch(payloads, false);
+    }
+
+    /**
+     * Writes as many records as fit into the active journal and continues with the rest in the next one, so a batch
+     * is never rejected for being larger than a journal.
+     */
+    public void writeBatch(final ByteBuffer[] payloads, final boolean sync) throws IOException {
+        int offset = 0;
+
+        while (offset < payloads.length) {
+            offset += appendToJournal(payloads, offset, sync, null, false);
+        }
+    }
+
+    /**
+     * Rethrows write failures even when relocating on them, so the writers whose records were not written fail.
+     * Records larger than a journal are rejected for their own writer before they are queued.
+     */
+    private int writeGroup(final ByteBuffer[] payloads, final int offset) throws IOException {
+        return appendBatch(payloads, offset, true, null);
     }
 
     public void flush() {
@@ -201,31 +554,153 @@ public class JournalDB implements Closeable {
         return new JournalReader(options, getJournalFile(fileSequence));
     }
 
-    private void relocateMonitorWork() {
-        if (0 == maxJournalSizeBytes) {
-            return;
+    /**
+     * Applies the retention policies to the archived journals right away instead of waiting for the retention thread.
+     */
+    public void applyRetention() throws IOException {
+        if (null == retentionService) {
+            throw new IllegalStateException("Retention is not enabled");
         }
 
+        retentionService.apply();
+    }
+
+    public JournalCursor openCursor() {
+        return openCursor(new JournalCursorPosition(0, Journal.FILE_HEADER_SIZE));
+    }
+
+    public JournalCursor openCursor(final JournalCursorPosition position) {
+        final JournalReaderOptions readerOptions = new JournalReaderOptions();
+
+        return new JournalCursor(
+            this,
+            position,
+            (int) readerOptions.getReadBufferSizeUnit().toBytes(readerOptions.getReadBufferSize())
+        );
+    }
+
+    /**
+     * Opens a cursor at the committed offset of a named consumer, or at the beginning if it has none.
+     */
+    public JournalCursor openCursor(final String consumer) {
+        final ConsumerOffset offset = consumerOffsets.get(consumer);
+
+        return null == offset
+            ? openCursor()
+            : openCursor(offset.toCursorPosition());
+    }
+
+    public ConsumerOffset getConsumerOffset(final String consumer) {
+        return consumerOffsets.get(consumer);
+    }
+
+    public void commitConsumerOffset(final String consumer, final ConsumerOffset offset) {
+        commitConsumerOffset(consumer, offset, false);
+    }
+
+    /**
+     * Stores the offset of a named consumer, syncing it to the disk if requested. Without sync the offset survives a
+     * process crash but not an operating system one.
+     */
+    public void commitConsumerOffset(final String consumer, final ConsumerOffset offset, final boolean sync) {
+        consumerOffsets.commit(consumer, offset, sync);
+    }
+
+    /**
+     * Opens a tailer positioned at the end of the active journal.
+     */
+    public synchronized JournalTailer openTailer() {
+        final Journal journal = currentJournal.get();
+        return openTailer(new JournalCursorPosition(journal.fileSequence(), journal.position()));
+    }
+
+    public JournalTailer openTailer(final JournalCursorPosition position) {
+        return new JournalTailer(openCursor(position), writeSignal);
+    }
+
+    /**
+     * Whether the journal is no longer written to. Synchronized with relocation, so a journal that has been
+     * replaced is also archived.
+     */
+    synchronized boolean isJournalFinished(final long fileSequence) {
+        return fileSequence < getSequence();
+    }
+
+    /**
+     * Reads entries of archived journals written from the start timestamp, inclusive, to the end timestamp,
+     * exclusive, in journal order. Journals whose cataloged timestamp range cannot match are skipped without being
+     * opened.
+     */
+    public void forEachEntryInTimeRange(
+        final long startTimestamp,
+        final long endTimestamp,
+        final Handler<JournalEntry> entryHandler
+    ) throws IOException {
+        final EntryReadOptions readOptions = new EntryReadOptions().setTimeRange(startTimestamp, endTimestamp);
+        final long activeSequence = getSequence();
+
+        for (final JournalCatalogEntry entry : catalog.entries()) {
+            if (entry.getFileSequence() >= activeSequence) {
+                break;
+            }
+
+            final boolean outOfRange = entry.isArchived()
+                && 0 != entry.getMaxTimestamp()
+                && (entry.getMaxTimestamp() < startTimestamp || entry.getMinTimestamp() >= endTimestamp);
+
+            final File journalFile = getJournalFile(entry.getFileSequence());
+
+            if (outOfRange || !journalFile.isFile()) {
+                continue;
+            }
+
+            try (final JournalReader reader = new JournalReader(METADATA_READ_OPTIONS, journalFile)) {
+                reader.forEachEntry(readOptions, entryHandler);
+            }
+        }
+    }
+
+    /**
+     * Stops the monitor thread without interrupting it, as an interrupt would close the channels of a journal it is
+     * relocating.
+     */
+    private void stopMonitor() {
+        LockSupport.unpark(monitor);
+
+        try {
+            monitor.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void monitorWork() {
         while (true) {
-            if (Thread.currentThread().isInterrupted()) {
+            if (closed.get()) {
                 return;
             }
 
             try {
-                if (currentJournal.get().size() > maxJournalSizeBytes) {
-                    relocate();
+                final Journal journal = currentJournal.get();
+                journal.checkpoint();
+
+                if (!closed.get() && journal.isRotationDue(System.currentTimeMillis())) {
+                    relocateFull(journal);
                 }
+
+                prepareStandbyJournal();
             } catch (final IOException e) {
-                LOGGER.error("Failure in relocation monitor", e);
+                LOGGER.error("Failure in journal monitor", e);
             }
 
-            LockSupport.parkNanos(RELOCATE_PARK_TIME_NS);
+            LockSupport.parkNanos(MONITOR_PARK_TIME_NS);
         }
     }
 
     private void loadPreviousJournal(final JournalDBOptions options) throws IOException {
         final long sequence = metadata.getLong(0);
         fileSequence.set(sequence);
+        deleteStandbyJournal(sequence + 1);
         try {
             currentJournal.set(openJournal(fileSequence.get()));
         } catch (final IOException e) {
@@ -239,6 +714,30 @@ public class JournalDB implements Closeable {
     }
 
     private Journal openJournal(final long fileSequence) throws IOException {
-        return new Journal(getJournalFile(fileSequence));
+        final Journal journal = new Journal(
+            options.getJournalOptions(),
+            getJournalFile(fileSequence),
+            (long) maxJournalSizeBytes,
+            fileSequence
+        );
+
+        scheduleRotation(journal);
+        return journal;
+    }
+
+    /**
+     * Applies the rotation policy to a journal, with the deadline at the end of the interval it was created in.
+     */
+    private void scheduleRotation(final Journal journal) {
+        final long deadline = rotationInterval > 0
+            ? (journal.createdAt() / rotationInterval + 1) * rotationInterval
+            : Long.MAX_VALUE;
+
+        journal.setRotationLimits(options.getRotationPolicy().getMaxRecords(), deadline);
+    }
+
+    @FunctionalInterface
+    private interface JournalWrite {
+        void write(final Journal journal) throws IOException;
     }
 }
@@ -19,6 +19,7 @@ package com.picoff.journaldb;
 import com.picoff.commons.unit.DigitalUnit;
 
 import java.io.File;
+import java.util.concurrent.TimeUnit;
 
 public class JournalDBOptions {
     private File dataDirectory;
@@ -26,6 +27,14 @@ public class JournalDBOptions {
     private DigitalUnit journalMaxSizeUnit = DigitalUnit.GIGABYTE;
     private boolean relocateOnBootFailure = false;
     private boolean relocateOnWriteFailure = false;
+    private JournalOptions journalOptions = new JournalOptions();
+    private boolean groupCommit = false;
+    private long groupCommitWindow = 0;
+    private TimeUnit groupCommitWindowUnit = TimeUnit.MILLISECONDS;
+    private long groupCommitMaxSize = 1;
+    private DigitalUnit groupCommitMaxSizeUnit = DigitalUnit.MEGABYTE;
+    private RetentionOptions retentionOptions = null;
+    private RotationPolicy rotationPolicy = new RotationPolicy();
 
     public File getDataDirectory() {
         return dataDirectory;
@@ -67,4 +76,74 @@ public class JournalDBOptions {
         this.relocateOnWriteFailure = relocateOnWriteFailure;
         return this;
     }
+
+    public JournalOptions getJournalOptions() {
+        return journalOptions;
+    }
+
+    public JournalDBOptions setJournalOptions(final JournalOptions journalOptions) {
+        this.journalOptions = journalOptions;
+        return this;
+    }
+
+    public boolean groupCommit() {
+        return groupCommit;
+    }
+
+    public JournalDBOptions setGroupCommit(final boolean groupCommit) {
+        this.groupCommit = groupCommit;
+        return this;
+    }
+
+    public long getGroupCommitWindow() {
+        return groupCommitWindow;
+    }
+
+    public TimeUnit getGroupCommitWindowUnit() {
+        return groupCommitWindowUnit;
+    }
+
+    public JournalDBOptions setGroupCommitWindow(final long groupCommitWindow, final TimeUnit unit) {
+        this.groupCommitWindow = groupCommitWindow;
+        this.groupCommitWindowUnit = unit;
+        return this;
+    }
+
+    public long getGroupCommitMaxSize() {
+        return groupCommitMaxSize;
+    }
+
+    public DigitalUnit getGroupCommitMaxSizeUnit() {
+        return groupCommitMaxSizeUnit;
+    }
+
+    public JournalDBOptions setGroupCommitMaxSize(final long groupCommitMaxSize, final DigitalUnit unit) {
+        this.groupCommitMaxSize = groupCommitMaxSize;
+        this.groupCommitMaxSizeUnit = unit;
+        return this;
+    }
+
+    public RetentionOptions getRetentionOptions() {
+        return retentionOptions;
+    }
+
+    /**
+     * Enables the background retention of archived journals, null disables it.
+     */
+    public JournalDBOptions setRetentionOptions(final RetentionOptions retentionOptions) {
+        this.retentionOptions = retentionOptions;
+        return this;
+    }
+
+    public RotationPolicy getRotationPolicy() {
+        return rotationPolicy;
+    }
+
+    /**
+     * Limits of each journal by entry count and time, checked on every write together with the journal max size.
+     */
+    public JournalDBOptions setRotationPolicy(final RotationPolicy rotationPolicy) {
+        this.rotationPolicy = rotationPolicy;
+        return this;
+    }
 }
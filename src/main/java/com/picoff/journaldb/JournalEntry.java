@@ -1,6 +1,10 @@
 package com.picoff.journaldb;
 
+import com.picoff.journaldb.exception.RecordChecksumException;
+
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 
 public class JournalEntry {
     private boolean integrityPass;
@@ -13,6 +17,10 @@ public class JournalEntry {
     private EntryProcessedStateWriter processedStateWriter;
     private boolean processed;
     private Long processedTimestamp;
+    private long position;
+    private Path path;
+    private JournalChecksum unverifiedChecksum;
+    private boolean blockRecord;
 
     public Long getProcessedTimestamp() {
         return processedTimestamp;
@@ -62,7 +70,24 @@ public class JournalEntry {
         this.timestamp = timestamp;
     }
 
+    /**
+     * Payload of the entry. With lazy checksum verification the first call verifies it, throwing an
+     * {@link UncheckedIOException} caused by a {@link RecordChecksumException} if it does not match.
+     */
     public byte[] getData() {
+        if (null != unverifiedChecksum) {
+            final RecordChecksum computed = RecordChecksum.get(unverifiedChecksum);
+            computed.update(data, 0, data.length);
+
+            if (computed.getValue() != checksum) {
+                throw new UncheckedIOException(new RecordChecksumException(
+                    position + Journal.RECORD_HEADER_SIZE + data.length + Journal.RECORD_CHECKSUM_SIZE
+                ));
+            }
+
+            unverifiedChecksum = null;
+        }
+
         return data;
     }
 
@@ -70,6 +95,10 @@ public class JournalEntry {
         this.data = data;
     }
 
+    void verifyOnAccess(final JournalChecksum algorithm) {
+        this.unverifiedChecksum = algorithm;
+    }
+
     public long getChecksum() {
         return checksum;
     }
@@ -86,6 +115,22 @@ public class JournalEntry {
         this.magicBytePass = magicBytePass;
     }
 
+    public long getPosition() {
+        return position;
+    }
+
+    void setPosition(final long position) {
+        this.position = position;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    void setPath(final Path path) {
+        this.path = path;
+    }
+
     public void writeProcessedState(final boolean state, final boolean sync) throws IOException {
         processedStateWriter.writeState(state, sync);
     }
@@ -93,4 +138,15 @@ public class JournalEntry {
     void setProcessedStateWriter(final EntryProcessedStateWriter processedStateWriter) {
         this.processedStateWriter = processedStateWriter;
     }
+
+    /**
+     * Whether the entry was read from a compressed block, whose record header it shares with the other records.
+     */
+    boolean isBlockRecord() {
+        return blockRecord;
+    }
+
+    void setBlockRecord(final boolean blockRecord) {
+        this.blockRecord = blockRecord;
+    }
 }
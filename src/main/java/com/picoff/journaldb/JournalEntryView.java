@@ -0,0 +1,182 @@
+package com.picoff.journaldb;
+
+import com.picoff.journaldb.exception.RecordChecksumException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+public class JournalEntryView {
+    private final Path path;
+    private final ProcessedStateBitmap processedState;
+    private ByteBuffer window;
+    private ByteBuffer payload;
+    private int offset;
+    private long position;
+    private ByteBuffer block;
+    private int blockOffset;
+    private int blockDataSize;
+    private long blockSequence;
+    private JournalChecksum unverifiedChecksum;
+    private long recordEnd;
+
+    JournalEntryView(final Path path, final ProcessedStateBitmap processedState) {
+        this.path = path;
+        this.processedState = processedState;
+    }
+
+    void wrap(final ByteBuffer window, final int offset, final long position) {
+        if (this.window != window) {
+            this.window = window;
+            this.payload = window.asReadOnlyBuffer();
+        }
+
+        this.offset = offset;
+        this.position = position;
+        this.block = null;
+        this.unverifiedChecksum = null;
+    }
+
+    void verifyOnAccess(final JournalChecksum algorithm, final long recordEnd) {
+        this.unverifiedChecksum = algorithm;
+        this.recordEnd = recordEnd;
+    }
+
+    /**
+     * Points the view at a record packed into the compressed block it currently wraps. Header fields other than the
+     * sequence and data size are the block's.
+     */
+    void wrapBlockRecord(final ByteBuffer block, final int offset, final int dataSize, final long sequence) {
+        this.block = block;
+        this.blockOffset = offset;
+        this.blockDataSize = dataSize;
+        this.blockSequence = sequence;
+    }
+
+    boolean isBlock() {
+        return Journal.RECORD_FLAG_DEFLATE_BLOCK == window.get(offset + 31);
+    }
+
+    boolean isVoid() {
+        return Journal.RECORD_FLAG_VOID == window.get(offset + 31);
+    }
+
+    int blockRecords() {
+        return window.getInt(offset + 32);
+    }
+
+    int blockRawSize() {
+        return window.getInt(offset + 36);
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public boolean isMagicBytePass() {
+        return Journal.RECORD_MAGIC_BYTE == window.get(offset);
+    }
+
+    public boolean isIntegrityPass() {
+        return Journal.B_TRUE == window.get(offset + 1);
+    }
+
+    public int getDataSize() {
+        return null != block ? blockDataSize : recordDataSize();
+    }
+
+    public long getSequence() {
+        return null != block ? blockSequence : window.getLong(offset + 6);
+    }
+
+    private int recordDataSize() {
+        return window.getInt(offset + 2);
+    }
+
+    public long getTimestamp() {
+        return window.getLong(offset + 14);
+    }
+
+    public boolean getProcessed() {
+        if (null != processedState && processedState.covers(getSequence())) {
+            return processedState.isProcessed(getSequence());
+        }
+
+        return Journal.B_TRUE == window.get(offset + 22);
+    }
+
+    public long getProcessedTimestamp() {
+        if (null != processedState && processedState.covers(getSequence())) {
+            return processedState.processedTimestamp(getSequence());
+        }
+
+        return window.getLong(offset + 23);
+    }
+
+    public long getChecksum() {
+        return window.getLong(offset + Journal.RECORD_HEADER_SIZE + recordDataSize());
+    }
+
+    /**
+     * Payload of the record, valid during the handler call. With lazy checksum verification the first call verifies
+     * it, throwing an {@link UncheckedIOException} caused by a {@link RecordChecksumException} if it does not match.
+     */
+    public ByteBuffer getPayload() {
+        if (null != unverifiedChecksum) {
+            if (computeChecksum(RecordChecksum.get(unverifiedChecksum)) != getChecksum()) {
+                throw new UncheckedIOException(new RecordChecksumException(recordEnd));
+            }
+
+            unverifiedChecksum = null;
+        }
+
+        if (null != block) {
+            block.clear();
+            block.limit(blockOffset + blockDataSize);
+            block.position(blockOffset);
+
+            return block;
+        }
+
+        return recordPayload();
+    }
+
+    /**
+     * Payload as stored in the journal, the compressed payload for blocks.
+     */
+    ByteBuffer recordPayload() {
+        final int payloadStart = offset + Journal.RECORD_HEADER_SIZE;
+
+        payload.clear();
+        payload.limit(payloadStart + recordDataSize());
+        payload.position(payloadStart);
+
+        return payload;
+    }
+
+    public byte[] getData() {
+        final byte[] data = new byte[getDataSize()];
+        getPayload().duplicate().get(data);
+        return data;
+    }
+
+    public void writeProcessedState(final boolean state, final boolean sync) throws IOException {
+        if (null != processedState && processedState.covers(getSequence())) {
+            processedState.mark(getSequence(), state, System.currentTimeMillis());
+
+            if (sync) {
+                processedState.flush(true);
+            }
+
+            return;
+        }
+
+        Journal.markRecordProcessed(position, state, sync, path, System.currentTimeMillis());
+    }
+
+    long computeChecksum(final RecordChecksum checksum) {
+        checksum.update(recordPayload());
+        return checksum.getValue();
+    }
+}
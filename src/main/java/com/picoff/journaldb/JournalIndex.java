@@ -0,0 +1,349 @@
+package com.picoff.journaldb;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+final class JournalIndex implements Closeable {
+    static final byte INDEX_MAGIC_BYTE = (byte) 'i';
+    static final int INDEX_HEADER_SIZE = 16;
+    static final int ENTRY_SIZE = 24;
+    private static final String INDEX_EXTENSION = ".idx";
+    private static final ThreadLocal<ByteBuffer> ENTRY = ThreadLocal.withInitial(() -> ByteBuffer.allocate(ENTRY_SIZE));
+
+    private final FileChannel channel;
+    private final int interval;
+
+    private JournalIndex(final FileChannel channel, final int interval) {
+        this.channel = channel;
+        this.interval = interval;
+    }
+
+    static File indexFile(final File journalFile) {
+        return Journal.sidecarFile(journalFile, INDEX_EXTENSION);
+    }
+
+    static JournalIndex open(final File journalFile, final int interval) throws IOException {
+        final FileChannel channel = FileChannel.open(
+            indexFile(journalFile).toPath(),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE
+        );
+
+        try {
+            final ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_SIZE);
+            readFully(channel, header, 0);
+
+            if (!header.hasRemaining() && INDEX_MAGIC_BYTE == header.get(0)) {
+                header.put(1, Journal.B_FALSE); // Is finished
+                header.position(0);
+                writeFully(channel, header, 0);
+                return new JournalIndex(channel, header.getInt(2));
+            }
+
+            channel.truncate(0);
+
+            header.clear();
+            header.put(INDEX_MAGIC_BYTE);
+            header.put(Journal.B_FALSE); // Is finished
+            header.putInt(interval); // Sequence interval
+            header.clear();
+            writeFully(channel, header, 0);
+
+            return new JournalIndex(channel, interval);
+        } catch (final IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Records the position of a record taking count sequences, a compressed block gets an entry for every indexed
+     * sequence it holds. Records holding no indexed sequence, most of them, return right away.
+     */
+    void record(final long sequence, final int count, final long position, final long timestamp) throws IOException {
+        final long firstSlot = (sequence + interval - 1) / interval;
+
+        if (firstSlot * interval >= sequence + count) {
+            return;
+        }
+
+        final ByteBuffer entry = ENTRY.get();
+
+        for (long slot = firstSlot; slot * interval < sequence + count; slot++) {
+            entry.clear();
+            entry.putLong(slot * interval);
+            entry.putLong(position);
+            entry.putLong(timestamp);
+            entry.flip();
+
+            writeFully(channel, entry, INDEX_HEADER_SIZE + slot * ENTRY_SIZE);
+        }
+    }
+
+    /**
+     * Drops the entries of sequences from the given one on, which no longer exist after crash recovery.
+     */
+    static void truncate(final File journalFile, final long sequence) throws IOException {
+        final File indexFile = indexFile(journalFile);
+
+        if (!indexFile.isFile()) {
+            return;
+        }
+
+        try (
+            final FileChannel channel = FileChannel.open(
+                indexFile.toPath(),
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE
+            )
+        ) {
+            final int interval = readInterval(channel);
+
+            if (interval <= 0) {
+                return;
+            }
+
+            final long slots = (sequence + interval - 1) / interval;
+
+            if (INDEX_HEADER_SIZE + slots * ENTRY_SIZE < channel.size()) {
+                channel.truncate(INDEX_HEADER_SIZE + slots * ENTRY_SIZE);
+            }
+        }
+    }
+
+    void finish() throws IOException {
+        writeFully(channel, ByteBuffer.wrap(new byte[]{Journal.B_TRUE}), 1);
+        channel.force(true);
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Finds the position of the closest indexed record at or before the given sequence. Entries that do not point at
+     * a record header with a matching sequence are skipped, falling back to the start of the journal.
+     */
+    static long seekSequence(
+        final File journalFile,
+        final FileChannel journal,
+        final long sequence
+    ) throws IOException {
+        try (final FileChannel channel = openForRead(journalFile)) {
+            if (null == channel) {
+                return Journal.FILE_HEADER_SIZE;
+            }
+
+            final int interval = readInterval(channel);
+            final ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+
+            for (long slot = Math.min(sequence / interval, entryCount(channel) - 1); slot >= 0; slot--) {
+                entry.clear();
+                readFully(channel, entry, INDEX_HEADER_SIZE + slot * ENTRY_SIZE);
+
+                if (isEntry(entry, 0, slot, interval) && pointsAtRecord(journal, entry.getLong(0), entry.getLong(8))) {
+                    return entry.getLong(8);
+                }
+            }
+        }
+
+        return Journal.FILE_HEADER_SIZE;
+    }
+
+    /**
+     * Finds the position of the last indexed record with a timestamp before the given one. Timestamps of
+     * concurrent writers can be out of sequence order when a writer is preempted between reserving its sequence and
+     * reading the clock, so callers should subtract their skew tolerance first.
+     */
+    static long seekTimestamp(
+        final File journalFile,
+        final FileChannel journal,
+        final long timestamp
+    ) throws IOException {
+        try (final FileChannel channel = openForRead(journalFile)) {
+            if (null == channel) {
+                return Journal.FILE_HEADER_SIZE;
+            }
+
+            final int interval = readInterval(channel);
+            final long entries = entryCount(channel);
+            final ByteBuffer chunk = ByteBuffer.allocate(ENTRY_SIZE * 4096);
+
+            long candidateSequence = -1;
+            long candidatePosition = Journal.FILE_HEADER_SIZE;
+            long slot = 0;
+
+            scan:
+            while (slot < entries) {
+                chunk.clear();
+                readFully(channel, chunk, INDEX_HEADER_SIZE + slot * ENTRY_SIZE);
+
+                for (int offset = 0; offset + ENTRY_SIZE <= chunk.position(); offset += ENTRY_SIZE, slot++) {
+                    if (!isEntry(chunk, offset, slot, interval)) {
+                        continue;
+                    }
+
+                    if (chunk.getLong(offset + 16) >= timestamp) {
+                        break scan;
+                    }
+
+                    candidateSequence = chunk.getLong(offset);
+                    candidatePosition = chunk.getLong(offset + 8);
+                }
+
+                if (chunk.hasRemaining()) {
+                    break;
+                }
+            }
+
+            if (candidateSequence >= 0 && pointsAtRecord(journal, candidateSequence, candidatePosition)) {
+                return candidatePosition;
+            }
+        }
+
+        return Journal.FILE_HEADER_SIZE;
+    }
+
+    /**
+     * Sequence and position pairs of all indexed records after the given position, in journal order. Entries are not
+     * validated against the journal.
+     */
+    static long[] entries(final File journalFile, final long after) throws IOException {
+        try (final FileChannel channel = openForRead(journalFile)) {
+            if (null == channel) {
+                return new long[0];
+            }
+
+            final int interval = readInterval(channel);
+            final long entries = entryCount(channel);
+            final ByteBuffer chunk = ByteBuffer.allocate(ENTRY_SIZE * 4096);
+            final long[] pairs = new long[(int) Math.min(entries * 2, Integer.MAX_VALUE - 1)];
+
+            int count = 0;
+            long slot = 0;
+
+            while (slot * 2 < pairs.length) {
+                chunk.clear();
+                readFully(channel, chunk, INDEX_HEADER_SIZE + slot * ENTRY_SIZE);
+
+                for (
+                    int offset = 0;
+                    offset + ENTRY_SIZE <= chunk.position() && slot * 2 < pairs.length;
+                    offset += ENTRY_SIZE, slot++
+                ) {
+                    // Entries of one compressed block share its position
+                    if (
+                        isEntry(chunk, offset, slot, interval)
+                            && chunk.getLong(offset + 8) > after
+                            && (0 == count || chunk.getLong(offset + 8) != pairs[count - 1])
+                    ) {
+                        pairs[count++] = chunk.getLong(offset);
+                        pairs[count++] = chunk.getLong(offset + 8);
+                    }
+                }
+
+                if (chunk.hasRemaining()) {
+                    break;
+                }
+            }
+
+            return Arrays.copyOf(pairs, count);
+        }
+    }
+
+    private static FileChannel openForRead(final File journalFile) throws IOException {
+        final File indexFile = indexFile(journalFile);
+
+        if (!indexFile.isFile()) {
+            return null;
+        }
+
+        final FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ);
+        final ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_SIZE);
+        readFully(channel, header, 0);
+
+        if (header.hasRemaining() || INDEX_MAGIC_BYTE != header.get(0) || header.getInt(2) <= 0) {
+            channel.close();
+            return null;
+        }
+
+        return channel;
+    }
+
+    private static int readInterval(final FileChannel channel) throws IOException {
+        final ByteBuffer interval = ByteBuffer.allocate(4);
+        readFully(channel, interval, 2);
+        return interval.getInt(0);
+    }
+
+    private static long entryCount(final FileChannel channel) throws IOException {
+        return (channel.size() - INDEX_HEADER_SIZE) / ENTRY_SIZE;
+    }
+
+    private static boolean isEntry(final ByteBuffer entries, final int offset, final long slot, final int interval) {
+        return entries.getLong(offset + 8) >= Journal.FILE_HEADER_SIZE && entries.getLong(offset) == slot * interval;
+    }
+
+    /**
+     * Whether a record holding the given sequence starts at the position, either as its own record or inside a
+     * compressed block.
+     */
+    static boolean pointsAtRecord(
+        final FileChannel journal,
+        final long sequence,
+        final long position
+    ) throws IOException {
+        final ByteBuffer record = ByteBuffer.allocate(36);
+        readFully(journal, record, position);
+
+        if (record.hasRemaining() || Journal.RECORD_MAGIC_BYTE != record.get(0)) {
+            return false;
+        }
+
+        final long firstSequence = record.getLong(6);
+        final int count = Journal.RECORD_FLAG_DEFLATE_BLOCK == record.get(31) ? record.getInt(32) : 1;
+
+        return sequence >= firstSequence && sequence < firstSequence + count;
+    }
+
+    private static void readFully(
+        final FileChannel channel,
+        final ByteBuffer buffer,
+        final long position
+    ) throws IOException {
+        long readPosition = position;
+
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, readPosition);
+
+            if (read < 0) {
+                return;
+            }
+
+            readPosition += read;
+        }
+    }
+
+    private static void writeFully(
+        final FileChannel channel,
+        final ByteBuffer buffer,
+        final long position
+    ) throws IOException {
+        long writePosition = position;
+
+        while (buffer.hasRemaining()) {
+            writePosition += channel.write(buffer, writePosition);
+        }
+    }
+}
@@ -7,6 +7,10 @@ public class JournalMetadata {
     private final long archivedAt;
     private final long sequence;
     private final long position;
+    private final long minTimestamp;
+    private final long maxTimestamp;
+    private final JournalCompression compression;
+    private final JournalChecksum checksum;
 
     JournalMetadata(
         final boolean isArchived,
@@ -14,7 +18,11 @@ public class JournalMetadata {
         final long createdAt,
         final long archivedAt,
         final long sequence,
-        final long position
+        final long position,
+        final long minTimestamp,
+        final long maxTimestamp,
+        final JournalCompression compression,
+        final JournalChecksum checksum
     ) {
         this.isArchived = isArchived;
         this.isClosedGracefully = isClosedGracefully;
@@ -22,6 +30,10 @@ public class JournalMetadata {
         this.archivedAt = archivedAt;
         this.sequence = sequence;
         this.position = position;
+        this.minTimestamp = minTimestamp;
+        this.maxTimestamp = maxTimestamp;
+        this.compression = compression;
+        this.checksum = checksum;
     }
 
     public boolean isArchived() {
@@ -47,4 +59,26 @@ public class JournalMetadata {
     public long getPosition() {
         return position;
     }
+
+    /**
+     * Earliest record timestamp in the journal, 0 if unknown.
+     */
+    public long getMinTimestamp() {
+        return minTimestamp;
+    }
+
+    /**
+     * Latest record timestamp in the journal, 0 if unknown.
+     */
+    public long getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    public JournalCompression getCompression() {
+        return compression;
+    }
+
+    public JournalChecksum getChecksum() {
+        return checksum;
+    }
 }
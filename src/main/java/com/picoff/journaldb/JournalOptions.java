@@ -0,0 +1,102 @@
+package com.picoff.journaldb;
+
+import com.picoff.commons.unit.DigitalUnit;
+
+public class JournalOptions {
+    private JournalWriteMode writeMode = JournalWriteMode.CHANNEL_PER_WRITE;
+    private long maxSize = 0;
+    private DigitalUnit maxSizeUnit = DigitalUnit.GIGABYTE;
+    private long mappedWindowSize = 1;
+    private DigitalUnit mappedWindowSizeUnit = DigitalUnit.GIGABYTE;
+    private int indexInterval = 1024;
+    private JournalCompression compression = JournalCompression.NONE;
+    private JournalChecksum checksum = JournalChecksum.CRC32;
+    private boolean recoverNotClosedGracefully = false;
+
+    public JournalWriteMode getWriteMode() {
+        return writeMode;
+    }
+
+    public JournalOptions setWriteMode(final JournalWriteMode writeMode) {
+        this.writeMode = writeMode;
+        return this;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public DigitalUnit getMaxSizeUnit() {
+        return maxSizeUnit;
+    }
+
+    public JournalOptions setMaxSize(final long maxSize, final DigitalUnit unit) {
+        this.maxSize = maxSize;
+        this.maxSizeUnit = unit;
+        return this;
+    }
+
+    public long getMappedWindowSize() {
+        return mappedWindowSize;
+    }
+
+    public DigitalUnit getMappedWindowSizeUnit() {
+        return mappedWindowSizeUnit;
+    }
+
+    public JournalOptions setMappedWindowSize(final long mappedWindowSize, final DigitalUnit unit) {
+        this.mappedWindowSize = mappedWindowSize;
+        this.mappedWindowSizeUnit = unit;
+        return this;
+    }
+
+    public int getIndexInterval() {
+        return indexInterval;
+    }
+
+    /**
+     * Number of records between sequence index entries, 0 disables the index.
+     */
+    public JournalOptions setIndexInterval(final int indexInterval) {
+        this.indexInterval = indexInterval;
+        return this;
+    }
+
+    public JournalCompression getCompression() {
+        return compression;
+    }
+
+    /**
+     * Compression of batch writes, applies to new journals. Existing journals keep the compression they were
+     * created with.
+     */
+    public JournalOptions setCompression(final JournalCompression compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    public JournalChecksum getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Record checksum algorithm, applies to new journals. Existing journals keep the algorithm they were created with.
+     */
+    public JournalOptions setChecksum(final JournalChecksum checksum) {
+        this.checksum = checksum;
+        return this;
+    }
+
+    public boolean recoverNotClosedGracefully() {
+        return recoverNotClosedGracefully;
+    }
+
+    /**
+     * Recover journals that were not closed gracefully instead of failing to open them. Records after the last safe
+     * checkpoint are validated and the journal is truncated after the last intact one.
+     */
+    public JournalOptions setRecoverNotClosedGracefully(final boolean recoverNotClosedGracefully) {
+        this.recoverNotClosedGracefully = recoverNotClosedGracefully;
+        return this;
+    }
+}
@@ -4,17 +4,38 @@ import com.picoff.commons.functional.Handler;
 import com.picoff.journaldb.exception.*;
 
 import java.io.Closeable;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
-import java.util.zip.CRC32;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class JournalReader implements Closeable {
     private static final EntryReadOptions DEFAULT_READ_OPTIONS = new EntryReadOptions();
     private static final JournalReaderOptions DEFAULT_OPEN_OPTIONS = new JournalReaderOptions();
-    private final RandomAccessFile randomAccessFile;
+    private static final int METADATA_SIZE = 53;
+    private static final String BLOCK_PROCESSED_STATE_MESSAGE =
+        "Processed state of records in a compressed block requires a processed state bitmap";
+    private final FileChannel channel;
+    private final RecordScanner scanner;
+    private final BlockInflater inflater = new BlockInflater();
+    private final long mapWindowSize;
+    private final int bufferSize;
     private final JournalMetadata metadata;
+    private final ProcessedStateBitmap processedState;
+    private FileChannel processedStateChannel;
     private final File file;
     private final Path path;
 
@@ -25,42 +46,82 @@ public class JournalReader implements Closeable {
     public JournalReader(final JournalReaderOptions options, final File file) throws IOException {
         this.file = file.getAbsoluteFile();
         this.path = this.file.toPath();
-        this.randomAccessFile = new RandomAccessFile(this.file, "r");
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        try {
+            this.metadata = readMetadata(options);
+            this.mapWindowSize = (long) options.getMapWindowSizeUnit().toBytes(options.getMapWindowSize());
+            this.bufferSize = (int) options.getReadBufferSizeUnit().toBytes(options.getReadBufferSize());
+            this.scanner = new RecordScanner(channel, bufferSize);
+            this.processedState = ProcessedStateStore.RECORD_HEADER == options.getProcessedStateStore()
+                ? null
+                : ProcessedStateBitmap.open(
+                    file,
+                    metadata.getSequence(),
+                    ProcessedStateStore.BITMAP_WITH_TIMESTAMPS == options.getProcessedStateStore()
+                );
+        } catch (final IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private JournalMetadata readMetadata(final JournalReaderOptions options) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(METADATA_SIZE);
 
-        randomAccessFile.seek(0);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // Read until the metadata region is complete or the file ends
+        }
+
+        header.flip();
 
-        final byte magicByte = randomAccessFile.readByte();
+        if (!header.hasRemaining()) {
+            throw new EOFException();
+        }
+
+        final byte magicByte = header.get();
 
         if (options.failOnMagicByte() && magicByte != Journal.FILE_MAGIC_BYTE) {
             throw new JournalOpenSignatureException();
         }
 
-        final byte isArchived = randomAccessFile.readByte();
+        if (header.remaining() < METADATA_SIZE - 1) {
+            throw new EOFException();
+        }
+
+        final byte isArchived = header.get();
 
         if (options.failOnNotArchived() && Journal.B_TRUE == isArchived) {
             throw new JournalNotArchivedException();
         }
 
-        final byte isClosedGracefully = randomAccessFile.readByte();
+        final byte isClosedGracefully = header.get();
 
         if (options.failOnNotClosedGracefully() && Journal.B_FALSE == isClosedGracefully) {
             throw new JournalNotClosedGracefullyException();
         }
 
-        final long createdAt = randomAccessFile.readLong();
-        final long archivedAt = randomAccessFile.readLong();
-        final long sequence = randomAccessFile.readLong();
-        final long position = randomAccessFile.readLong();
+        final long createdAt = header.getLong();
+        final long archivedAt = header.getLong();
+        final long sequence = header.getLong();
+        final long position = header.getLong();
+        final long minTimestamp = header.getLong();
+        final long maxTimestamp = header.getLong();
+        final JournalCompression compression = Journal.compression(header.get());
+        final JournalChecksum checksum = Journal.checksum(header.get());
 
-        this.metadata = new JournalMetadata(
+        return new JournalMetadata(
             Journal.B_TRUE == isArchived,
             Journal.B_TRUE == isClosedGracefully,
             createdAt,
             archivedAt,
             sequence,
-            position
+            position,
+            minTimestamp,
+            maxTimestamp,
+            compression,
+            checksum
         );
-
     }
 
     public JournalMetadata getMetadata() {
@@ -75,82 +136,517 @@ public class JournalReader implements Closeable {
         final EntryReadOptions options,
         final Handler<JournalEntry> entryHandler
     ) throws IOException {
-        randomAccessFile.seek(options.getStartPosition());
+        scanner.seek(startPosition(options));
+
+        while (scanner.hasRemaining()) {
+            final JournalEntry entry = readEntry(scanner, metadata.getChecksum(), options, path, processedState);
+
+            if (null != entry && scanner.isBlock()) {
+                readBlock(scanner, entry, inflater, options, path, processedState, entryHandler);
+            } else if (null != entry) {
+                entryHandler.handle(entry);
+            } else if (scanner.timestamp >= stopTimestamp(options)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads the record at the scanner position, returning null if it does not pass the read options. Compressed
+     * blocks are returned as read, to be passed to {@link #readBlock}.
+     */
+    static JournalEntry readEntry(
+        final RecordScanner scanner,
+        final JournalChecksum algorithm,
+        final EntryReadOptions options,
+        final Path path,
+        final ProcessedStateBitmap processedState
+    ) throws IOException {
+        scanner.readHeader();
+
+        if (!scanner.isBlock() && null != processedState && processedState.covers(scanner.sequence)) {
+            scanner.processed = processedState.isProcessed(scanner.sequence);
+            scanner.processedTimestamp = processedState.processedTimestamp(scanner.sequence);
+        }
 
-        while (randomAccessFile.getFilePointer() < randomAccessFile.length()) {
-            final long recordStartPosition = randomAccessFile.getFilePointer();
+        final long recordStartPosition = scanner.recordPosition;
+        final byte magicByte = scanner.magicByte;
+
+        if (options.failOnMagicByte() && Journal.RECORD_MAGIC_BYTE != magicByte) {
+            throw new RecordMagicByteFailException(recordStartPosition + 1);
+        }
 
-            final byte magicByte = randomAccessFile.readByte();
+        final byte integrityFlag = scanner.integrityFlag;
 
-            if (options.failOnMagicByte() && Journal.RECORD_MAGIC_BYTE != magicByte) {
-                throw new RecordMagicByteFailException(randomAccessFile.getFilePointer());
+        if (options.failOnIntegrityByte() && Journal.B_TRUE != integrityFlag) {
+            throw new RecordIntegrityFailException(recordStartPosition + 2);
+        }
+
+        if (scanner.isVoid()) {
+            scanner.seek(scanner.recordEnd());
+            return null;
+        }
+
+        final int dataSize = scanner.dataSize;
+        final long sequence = scanner.sequence;
+        final long timestamp = scanner.timestamp;
+        final boolean isProcessed = scanner.processed;
+        final long processedTimestamp = scanner.processedTimestamp;
+
+        // Records of a compressed block are filtered once inflated
+        final boolean filterPass = scanner.isBlock()
+            ? inRange(options, scanner.lastSequence(), timestamp)
+            : inRange(options, sequence, timestamp) && (options.getReadFilter() == null || options
+            .getReadFilter()
+            .test(new FilterMetadata(
+                integrityFlag == Journal.B_TRUE, isProcessed, processedTimestamp, sequence,
+                timestamp
+            )));
+
+        if (!filterPass) {
+            scanner.seek(scanner.recordEnd());
+            return null;
+        }
+
+        final byte[] data = new byte[dataSize];
+        scanner.readData(data);
+
+        final long checksum = scanner.readLong();
+
+        final boolean verifyLazily = options.verifyChecksumLazily() && !scanner.isBlock();
+
+        if (options.verifyChecksum() && !verifyLazily && JournalChecksum.NONE != algorithm) {
+            final RecordChecksum computed = RecordChecksum.get(algorithm);
+            computed.update(data, 0, data.length);
+
+            if (computed.getValue() != checksum) {
+                throw new RecordChecksumException(scanner.position());
             }
+        }
 
-            final byte integrityFlag = randomAccessFile.readByte();
+        final JournalEntry entry = createEntry(scanner, data, checksum, path, processedState);
 
-            if (options.failOnIntegrityByte() && Journal.B_TRUE != integrityFlag) {
-                throw new RecordIntegrityFailException(randomAccessFile.getFilePointer());
+        if (options.verifyChecksum() && verifyLazily && JournalChecksum.NONE != algorithm) {
+            entry.verifyOnAccess(algorithm);
+        }
+
+        return entry;
+    }
+
+    /**
+     * Passes the records of the compressed block the scanner has just read to the handler, applying the read options
+     * to each of them. Records of a block share its position, checksum and record header, so their processed state can
+     * only be written to a processed state bitmap.
+     */
+    static void readBlock(
+        final RecordScanner scanner,
+        final JournalEntry block,
+        final BlockInflater inflater,
+        final EntryReadOptions options,
+        final Path path,
+        final ProcessedStateBitmap processedState,
+        final Handler<JournalEntry> entryHandler
+    ) throws IOException {
+        final ByteBuffer packed = inflater.inflate(block.getData(), block.getDataSize(), scanner.blockRawSize);
+        final long blockPosition = block.getPosition();
+
+        for (int i = 0; i < scanner.blockRecords; i++) {
+            final int dataSize = packed.remaining() >= Integer.BYTES ? packed.getInt() : -1;
+
+            if (dataSize < 0 || dataSize > packed.remaining()) {
+                throw new IOException("Corrupt compressed block at " + blockPosition);
             }
 
-            final int dataSize = randomAccessFile.readInt();
-            final long sequence = randomAccessFile.readLong();
-            final long timestamp = randomAccessFile.readLong();
-            final boolean isProcessed = randomAccessFile.readByte() == Journal.B_TRUE;
-            final long processedTimestamp = randomAccessFile.readLong();
+            final long sequence = block.getSequence() + i;
+            final boolean bitmapCovered = null != processedState && processedState.covers(sequence);
+            final boolean isProcessed = bitmapCovered ? processedState.isProcessed(sequence) : block.getProcessed();
+            final long processedTimestamp = bitmapCovered
+                ? processedState.processedTimestamp(sequence)
+                : block.getProcessedTimestamp();
 
-            final boolean filterPass = options.getReadFilter() == null || options
+            final boolean filterPass = inRange(options, sequence, block.getTimestamp())
+                && (options.getReadFilter() == null || options
                 .getReadFilter()
                 .test(new FilterMetadata(
-                    integrityFlag == Journal.B_TRUE, isProcessed, processedTimestamp, sequence,
-                    timestamp
-                ));
+                    block.isIntegrityPass(), isProcessed, processedTimestamp,
+                    sequence, block.getTimestamp()
+                )));
 
             if (!filterPass) {
-                final long nextRecordPosition = recordStartPosition + dataSize + Journal.RECORD_HEADER_SIZE + Journal.RECORD_CHECKSUM_SIZE;
-                randomAccessFile.seek(nextRecordPosition);
+                packed.position(packed.position() + dataSize);
                 continue;
             }
 
-            randomAccessFile.skipBytes(17);
-
             final byte[] data = new byte[dataSize];
-            randomAccessFile.readFully(data);
-
-            final long checksum = randomAccessFile.readLong();
-
-            if (options.verifyChecksum()) {
-                final CRC32 crc32 = new CRC32();
-                crc32.update(data);
-
-                if (crc32.getValue() != checksum) {
-                    throw new RecordChecksumException(randomAccessFile.getFilePointer());
-                }
-            }
+            packed.get(data);
 
             final JournalEntry entry = new JournalEntry();
-
-            entry.setMagicBytePass(magicByte == Journal.RECORD_MAGIC_BYTE);
-            entry.setIntegrityPass(integrityFlag == Journal.B_TRUE);
+            entry.setMagicBytePass(block.isMagicBytePass());
+            entry.setIntegrityPass(block.isIntegrityPass());
             entry.setDataSize(dataSize);
             entry.setSequence(sequence);
-            entry.setTimestamp(timestamp);
+            entry.setTimestamp(block.getTimestamp());
             entry.setData(data);
-            entry.setChecksum(checksum);
+            entry.setChecksum(block.getChecksum());
             entry.setProcessed(isProcessed);
             entry.setProcessedTimestamp(processedTimestamp);
+            entry.setPosition(blockPosition);
+            entry.setPath(path);
+            entry.setBlockRecord(true);
             entry.setProcessedStateWriter((state, sync) -> {
+                if (!bitmapCovered) {
+                    throw new IllegalStateException(BLOCK_PROCESSED_STATE_MESSAGE);
+                }
+
                 final long newProcessed = System.currentTimeMillis();
                 entry.setProcessed(state);
                 entry.setProcessedTimestamp(state ? newProcessed : null);
-                Journal.markRecordProcessed(recordStartPosition, state, sync, path, newProcessed);
+                processedState.mark(sequence, state, newProcessed);
+
+                if (sync) {
+                    processedState.flush(true);
+                }
             });
 
             entryHandler.handle(entry);
         }
     }
 
+    static JournalEntry createEntry(
+        final RecordScanner scanner,
+        final byte[] data,
+        final long checksum,
+        final Path path,
+        final ProcessedStateBitmap processedState
+    ) {
+        final long recordStartPosition = scanner.recordPosition;
+        final long sequence = scanner.sequence;
+        final JournalEntry entry = new JournalEntry();
+
+        entry.setMagicBytePass(scanner.magicByte == Journal.RECORD_MAGIC_BYTE);
+        entry.setIntegrityPass(scanner.integrityFlag == Journal.B_TRUE);
+        entry.setDataSize(scanner.dataSize);
+        entry.setSequence(scanner.sequence);
+        entry.setTimestamp(scanner.timestamp);
+        entry.setData(data);
+        entry.setChecksum(checksum);
+        entry.setProcessed(scanner.processed);
+        entry.setProcessedTimestamp(scanner.processedTimestamp);
+        entry.setPosition(recordStartPosition);
+        entry.setPath(path);
+        entry.setProcessedStateWriter((state, sync) -> {
+            final long newProcessed = System.currentTimeMillis();
+            entry.setProcessed(state);
+            entry.setProcessedTimestamp(state ? newProcessed : null);
+
+            if (null != processedState && processedState.covers(sequence)) {
+                processedState.mark(sequence, state, newProcessed);
+
+                if (sync) {
+                    processedState.flush(true);
+                }
+            } else {
+                Journal.markRecordProcessed(recordStartPosition, state, sync, path, newProcessed);
+            }
+        });
+
+        return entry;
+    }
+
+    public void forEachEntryView(final Handler<JournalEntryView> viewHandler) throws IOException {
+        forEachEntryView(DEFAULT_READ_OPTIONS, viewHandler);
+    }
+
+    public void forEachEntryView(
+        final EntryReadOptions options,
+        final Handler<JournalEntryView> viewHandler
+    ) throws IOException {
+        final MappedReadWindow window = new MappedReadWindow(channel, mapWindowSize);
+        final JournalEntryView view = new JournalEntryView(path, processedState);
+
+        long position = startPosition(options);
+        long fileSize = channel.size();
+
+        while (true) {
+            if (position >= fileSize) {
+                fileSize = channel.size();
+
+                if (position >= fileSize) {
+                    return;
+                }
+            }
+
+            if (position + Journal.RECORD_HEADER_SIZE > fileSize) {
+                throw new EOFException();
+            }
+
+            ByteBuffer buffer = window.map(position, Journal.RECORD_HEADER_SIZE, fileSize);
+            view.wrap(buffer, window.offset(position), position);
+
+            if (options.failOnMagicByte() && !view.isMagicBytePass()) {
+                throw new RecordMagicByteFailException(position + 1);
+            }
+
+            if (options.failOnIntegrityByte() && !view.isIntegrityPass()) {
+                throw new RecordIntegrityFailException(position + 2);
+            }
+
+            final int recordSize = Journal.RECORD_HEADER_SIZE + view.getDataSize() + Journal.RECORD_CHECKSUM_SIZE;
+            final boolean isBlock = view.isBlock();
+            final long recordEnd = position + recordSize;
+
+            if (recordEnd > fileSize) {
+                throw new EOFException();
+            }
+
+            if (view.getTimestamp() >= stopTimestamp(options)) {
+                return;
+            }
+
+            final boolean filterPass = !view.isVoid() && (isBlock
+                ? inRange(options, view.getSequence() + view.blockRecords() - 1, view.getTimestamp())
+                : viewFilterPass(options, view));
+
+            if (filterPass) {
+                buffer = window.map(position, recordSize, fileSize);
+                view.wrap(buffer, window.offset(position), position);
+
+                final boolean verify = options.verifyChecksum() && JournalChecksum.NONE != metadata.getChecksum();
+
+                if (verify && (isBlock || !options.verifyChecksumLazily())) {
+                    if (view.computeChecksum(RecordChecksum.get(metadata.getChecksum())) != view.getChecksum()) {
+                        throw new RecordChecksumException(recordEnd);
+                    }
+                } else if (verify) {
+                    view.verifyOnAccess(metadata.getChecksum(), recordEnd);
+                }
+
+                if (isBlock) {
+                    forEachBlockView(options, view, viewHandler);
+                } else {
+                    viewHandler.handle(view);
+                }
+            }
+
+            position = recordEnd;
+        }
+    }
+
+    private void forEachBlockView(
+        final EntryReadOptions options,
+        final JournalEntryView view,
+        final Handler<JournalEntryView> viewHandler
+    ) throws IOException {
+        final ByteBuffer packed = inflater.inflate(view.recordPayload(), view.blockRawSize());
+        final ByteBuffer records = packed.asReadOnlyBuffer();
+        final long firstSequence = view.getSequence();
+        final int count = view.blockRecords();
+
+        for (int i = 0; i < count; i++) {
+            final int dataSize = packed.remaining() >= Integer.BYTES ? packed.getInt() : -1;
+
+            if (dataSize < 0 || dataSize > packed.remaining()) {
+                throw new IOException("Corrupt compressed block at " + view.getPosition());
+            }
+
+            view.wrapBlockRecord(records, packed.position(), dataSize, firstSequence + i);
+            packed.position(packed.position() + dataSize);
+
+            if (viewFilterPass(options, view)) {
+                viewHandler.handle(view);
+            }
+        }
+    }
+
+    private static boolean viewFilterPass(final EntryReadOptions options, final JournalEntryView view) {
+        return inRange(options, view.getSequence(), view.getTimestamp())
+            && (options.getReadFilter() == null || options
+            .getReadFilter()
+            .test(new FilterMetadata(
+                view.isIntegrityPass(), view.getProcessed(), view.getProcessedTimestamp(), view.getSequence(),
+                view.getTimestamp()
+            )));
+    }
+
+    private long startPosition(final EntryReadOptions options) throws IOException {
+        long position = options.getStartPosition();
+
+        if (options.getStartSequence() > 0) {
+            position = Math.max(position, JournalIndex.seekSequence(file, channel, options.getStartSequence()));
+        }
+
+        if (options.getStartTimestamp() > 0) {
+            position = Math.max(position, JournalIndex.seekTimestamp(
+                file,
+                channel,
+                options.getStartTimestamp() - options.getTimestampSkewTolerance()
+            ));
+        }
+
+        return position;
+    }
+
+    private static boolean inRange(final EntryReadOptions options, final long sequence, final long timestamp) {
+        return sequence >= options.getStartSequence()
+            && timestamp >= options.getStartTimestamp()
+            && timestamp < options.getEndTimestamp();
+    }
+
+    private static long stopTimestamp(final EntryReadOptions options) {
+        final long endTimestamp = options.getEndTimestamp();
+        final long tolerance = options.getTimestampSkewTolerance();
+
+        return endTimestamp > Long.MAX_VALUE - tolerance ? Long.MAX_VALUE : endTimestamp + tolerance;
+    }
+
+    public Spliterator<JournalEntry> spliterator() throws IOException {
+        return spliterator(DEFAULT_READ_OPTIONS);
+    }
+
+    /**
+     * Splits the journal at sequence index positions, so parts of it can be read and verified in parallel. Journals
+     * without an index are not split.
+     */
+    public Spliterator<JournalEntry> spliterator(final EntryReadOptions options) throws IOException {
+        final long startPosition = startPosition(options);
+
+        return new JournalSpliterator(
+            channel,
+            path,
+            processedState,
+            metadata.getChecksum(),
+            options,
+            bufferSize,
+            startPosition,
+            channel.size(),
+            JournalIndex.entries(file, startPosition)
+        );
+    }
+
+    public Stream<JournalEntry> stream(final EntryReadOptions options, final boolean parallel) throws IOException {
+        return StreamSupport.stream(spliterator(options), parallel);
+    }
+
+    /**
+     * Reads the journal in parallel on the given pool. Entries are passed to the handler concurrently and in no
+     * particular order.
+     */
+    public void forEachEntryParallel(
+        final ForkJoinPool pool,
+        final EntryReadOptions options,
+        final Handler<JournalEntry> entryHandler
+    ) throws IOException {
+        final Stream<JournalEntry> entries = stream(options, true);
+
+        try {
+            pool.submit(() -> entries.forEach(entryHandler::handle)).get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new IOException(e.getCause());
+        }
+    }
+
+    public void markProcessed(final Collection<JournalEntry> entries, final boolean sync) throws IOException {
+        writeProcessedState(entries, true, sync);
+    }
+
+    /**
+     * Writes the processed state of many entries of this journal at once. Record headers are updated in file order
+     * through one channel kept by the reader, and synced to the disk once at the end if requested. Entries of a
+     * compressed block require a processed state bitmap, nothing is written if one of them is not covered by it.
+     */
+    public synchronized void writeProcessedState(
+        final Collection<JournalEntry> entries,
+        final boolean state,
+        final boolean sync
+    ) throws IOException {
+        final JournalEntry[] sorted = entries.toArray(new JournalEntry[0]);
+        Arrays.sort(sorted, Comparator.comparingLong(JournalEntry::getPosition));
+
+        for (final JournalEntry entry : sorted) {
+            if (!path.equals(entry.getPath())) {
+                throw new IllegalArgumentException("Entry does not belong to this journal");
+            }
+
+            if (entry.isBlockRecord() && (null == processedState || !processedState.covers(entry.getSequence()))) {
+                throw new IllegalStateException(BLOCK_PROCESSED_STATE_MESSAGE);
+            }
+        }
+
+        final long newProcessed = System.currentTimeMillis();
+        final ByteBuffer processed = ByteBuffer.allocate(9);
+        boolean headersWritten = false;
+
+        for (final JournalEntry entry : sorted) {
+            entry.setProcessed(state);
+            entry.setProcessedTimestamp(state ? newProcessed : null);
+
+            if (null != processedState && processedState.covers(entry.getSequence())) {
+                processedState.mark(entry.getSequence(), state, newProcessed);
+                continue;
+            }
+
+            if (null == processedStateChannel) {
+                processedStateChannel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+
+            processed.clear();
+            processed.put(state ? Journal.B_TRUE : Journal.B_FALSE);
+            processed.putLong(state ? newProcessed : 0L);
+            processed.flip();
+
+            long writePosition = entry.getPosition() + 22;
+
+            while (processed.hasRemaining()) {
+                writePosition += processedStateChannel.write(processed, writePosition);
+            }
+
+            headersWritten = true;
+        }
+
+        if (sync && headersWritten) {
+            processedStateChannel.force(false);
+        }
+
+        if (sync && null != processedState) {
+            processedState.flush(true);
+        }
+    }
+
+    /**
+     * Writes processed state kept in a bitmap to the disk. Has no effect when processed state is written to the
+     * record headers.
+     */
+    public void flushProcessedState() throws IOException {
+        if (null != processedState) {
+            processedState.flush(true);
+        }
+    }
+
     @Override
     public void close() throws IOException {
-        randomAccessFile.close();
+        inflater.close();
+
+        try {
+            if (null != processedState) {
+                processedState.close();
+            }
+
+            if (null != processedStateChannel) {
+                processedStateChannel.close();
+            }
+        } finally {
+            channel.close();
+        }
     }
 }
@@ -1,9 +1,16 @@
 package com.picoff.journaldb;
 
+import com.picoff.commons.unit.DigitalUnit;
+
 public class JournalReaderOptions {
     private boolean failOnMagicByte = true;
     private boolean failOnNotArchived = true;
     private boolean failOnNotClosedGracefully = true;
+    private long readBufferSize = 1;
+    private DigitalUnit readBufferSizeUnit = DigitalUnit.MEGABYTE;
+    private long mapWindowSize = 256;
+    private DigitalUnit mapWindowSizeUnit = DigitalUnit.MEGABYTE;
+    private ProcessedStateStore processedStateStore = ProcessedStateStore.RECORD_HEADER;
 
     public boolean failOnMagicByte() {
         return failOnMagicByte;
@@ -31,4 +38,41 @@ public class JournalReaderOptions {
         this.failOnNotClosedGracefully = failOnNotClosedGracefully;
         return this;
     }
+
+    public long getReadBufferSize() {
+        return readBufferSize;
+    }
+
+    public DigitalUnit getReadBufferSizeUnit() {
+        return readBufferSizeUnit;
+    }
+
+    public JournalReaderOptions setReadBufferSize(final long readBufferSize, final DigitalUnit unit) {
+        this.readBufferSize = readBufferSize;
+        this.readBufferSizeUnit = unit;
+        return this;
+    }
+
+    public long getMapWindowSize() {
+        return mapWindowSize;
+    }
+
+    public DigitalUnit getMapWindowSizeUnit() {
+        return mapWindowSizeUnit;
+    }
+
+    public JournalReaderOptions setMapWindowSize(final long mapWindowSize, final DigitalUnit unit) {
+        this.mapWindowSize = mapWindowSize;
+        this.mapWindowSizeUnit = unit;
+        return this;
+    }
+
+    public ProcessedStateStore getProcessedStateStore() {
+        return processedStateStore;
+    }
+
+    public JournalReaderOptions setProcessedStateStore(final ProcessedStateStore processedStateStore) {
+        this.processedStateStore = processedStateStore;
+        return this;
+    }
 }
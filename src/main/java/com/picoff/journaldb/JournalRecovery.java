@@ -0,0 +1,101 @@
+package com.picoff.journaldb;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * Finds the end of the intact records of a journal that was not closed gracefully. Records are validated from the last
+ * safe checkpoint, before which all records are known to be completely written, so the scan only covers the tail
+ * written since then.
+ */
+final class JournalRecovery {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JournalRecovery.class);
+    private static final int SCAN_BUFFER_SIZE = 1024 * 1024;
+
+    long position;
+    long sequence;
+    long minTimestamp = Long.MAX_VALUE;
+    long maxTimestamp = 0;
+
+    private JournalRecovery(final long position, final long sequence) {
+        this.position = position;
+        this.sequence = sequence;
+    }
+
+    static JournalRecovery scan(
+        final Path path,
+        final FileChannel channel,
+        final long safePosition,
+        final long safeSequence,
+        final JournalChecksum algorithm
+    ) throws IOException {
+        final JournalRecovery recovery = new JournalRecovery(safePosition, safeSequence);
+        final RecordScanner scanner = new RecordScanner(channel, SCAN_BUFFER_SIZE);
+        final long fileSize = channel.size();
+        scanner.seek(safePosition);
+
+        while (scanner.hasRemaining()) {
+            try {
+                scanner.readHeader();
+            } catch (final EOFException e) {
+                break;
+            }
+
+            final boolean intact = Journal.RECORD_MAGIC_BYTE == scanner.magicByte
+                && Journal.B_TRUE == scanner.integrityFlag
+                && recovery.sequence == scanner.sequence
+                && scanner.dataSize >= 0
+                && scanner.recordEnd() <= fileSize
+                && (!scanner.isBlock() || scanner.blockRecords > 0);
+
+            if (!intact || !checksumMatches(scanner, algorithm)) {
+                break;
+            }
+
+            recovery.position = scanner.recordEnd();
+            recovery.sequence = scanner.lastSequence() + 1;
+            recovery.minTimestamp = Math.min(recovery.minTimestamp, scanner.timestamp);
+            recovery.maxTimestamp = Math.max(recovery.maxTimestamp, scanner.timestamp);
+            scanner.seek(recovery.position);
+        }
+
+        LOGGER.warn(
+            "Recovered journal {} that was not closed gracefully, scanned {} bytes from {} and truncated {} bytes",
+            path,
+            recovery.position - safePosition,
+            safePosition,
+            fileSize - recovery.position
+        );
+
+        return recovery;
+    }
+
+    private static boolean checksumMatches(
+        final RecordScanner scanner,
+        final JournalChecksum algorithm
+    ) throws IOException {
+        final byte[] data = new byte[scanner.dataSize];
+
+        try {
+            scanner.readData(data);
+
+            final long checksum = scanner.readLong();
+
+            if (JournalChecksum.NONE == algorithm) {
+                return true;
+            }
+
+            final RecordChecksum computed = RecordChecksum.get(algorithm);
+            computed.update(data, 0, data.length);
+
+            return computed.getValue() == checksum;
+        } catch (final EOFException e) {
+            return false;
+        }
+    }
+}
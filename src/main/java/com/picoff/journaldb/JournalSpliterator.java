@@ -0,0 +1,178 @@
+package com.picoff.journaldb;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Reads records from a byte range of a journal. Ranges are split at indexed record positions, which are checked
+ * against the record header at that position before being used.
+ */
+final class JournalSpliterator implements Spliterator<JournalEntry> {
+    private final FileChannel channel;
+    private final Path path;
+    private final ProcessedStateBitmap processedState;
+    private final JournalChecksum checksum;
+    private final EntryReadOptions options;
+    private final int bufferSize;
+    private final long[] splitEntries;
+    private final ArrayDeque<JournalEntry> blockEntries = new ArrayDeque<>();
+    private BlockInflater inflater;
+    private long start;
+    private final long end;
+    private int splitFrom;
+    private int splitTo;
+    private RecordScanner scanner;
+
+    JournalSpliterator(
+        final FileChannel channel,
+        final Path path,
+        final ProcessedStateBitmap processedState,
+        final JournalChecksum checksum,
+        final EntryReadOptions options,
+        final int bufferSize,
+        final long start,
+        final long end,
+        final long[] splitEntries
+    ) {
+        this(
+            channel,
+            path,
+            processedState,
+            checksum,
+            options,
+            bufferSize,
+            start,
+            end,
+            splitEntries,
+            0,
+            splitEntries.length / 2
+        );
+    }
+
+    private JournalSpliterator(
+        final FileChannel channel,
+        final Path path,
+        final ProcessedStateBitmap processedState,
+        final JournalChecksum checksum,
+        final EntryReadOptions options,
+        final int bufferSize,
+        final long start,
+        final long end,
+        final long[] splitEntries,
+        final int splitFrom,
+        final int splitTo
+    ) {
+        this.channel = channel;
+        this.path = path;
+        this.processedState = processedState;
+        this.checksum = checksum;
+        this.options = options;
+        this.bufferSize = bufferSize;
+        this.start = start;
+        this.end = end;
+        this.splitEntries = splitEntries;
+        this.splitFrom = splitFrom;
+        this.splitTo = splitTo;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super JournalEntry> action) {
+        try {
+            if (null == scanner) {
+                scanner = new RecordScanner(channel, bufferSize);
+                scanner.seek(start);
+            }
+
+            while (blockEntries.isEmpty() && scanner.position() < end && scanner.hasRemaining()) {
+                final JournalEntry entry = JournalReader.readEntry(scanner, checksum, options, path, processedState);
+
+                if (null != entry && scanner.isBlock()) {
+                    if (null == inflater) {
+                        inflater = new BlockInflater();
+                    }
+
+                    JournalReader.readBlock(scanner, entry, inflater, options, path, processedState, blockEntries::add);
+                } else if (null != entry) {
+                    action.accept(entry);
+                    return true;
+                }
+            }
+
+            if (blockEntries.isEmpty()) {
+                return false;
+            }
+
+            action.accept(blockEntries.poll());
+            return true;
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Spliterator<JournalEntry> trySplit() {
+        if (null != scanner) {
+            return null;
+        }
+
+        while (splitFrom < splitTo) {
+            final int middle = (splitFrom + splitTo) >>> 1;
+            final long splitSequence = splitEntries[middle * 2];
+            final long splitPosition = splitEntries[middle * 2 + 1];
+
+            if (splitPosition <= start || splitPosition >= end) {
+                return null;
+            }
+
+            final boolean isRecordStart;
+
+            try {
+                isRecordStart = JournalIndex.pointsAtRecord(channel, splitSequence, splitPosition);
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            if (!isRecordStart) {
+                // Fall back to a smaller range of split positions in front of the invalid one
+                splitTo = middle;
+                continue;
+            }
+
+            final JournalSpliterator prefix = new JournalSpliterator(
+                channel,
+                path,
+                processedState,
+                checksum,
+                options,
+                bufferSize,
+                start,
+                splitPosition,
+                splitEntries,
+                splitFrom,
+                middle
+            );
+
+            start = splitPosition;
+            splitFrom = middle + 1;
+
+            return prefix;
+        }
+
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return end - start;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+}
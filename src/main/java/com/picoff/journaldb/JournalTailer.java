@@ -0,0 +1,76 @@
+package com.picoff.journaldb;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Follows the active journal of a {@link JournalDB} and into the journals it relocates to. Waiting readers are woken
+ * by the writers as records are written, without polling the journal files.
+ */
+public class JournalTailer implements Closeable {
+    private final JournalCursor cursor;
+    private final WriteSignal writeSignal;
+
+    JournalTailer(final JournalCursor cursor, final WriteSignal writeSignal) {
+        this.cursor = cursor;
+        this.writeSignal = writeSignal;
+    }
+
+    /**
+     * Waits for the next completely written record.
+     */
+    public JournalEntry next() throws IOException, InterruptedException {
+        JournalEntry entry;
+
+        do {
+            entry = next(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } while (null == entry);
+
+        return entry;
+    }
+
+    /**
+     * Waits for the next completely written record, returning null if none is written before the timeout.
+     */
+    public JournalEntry next(final long timeout, final TimeUnit unit) throws IOException, InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        JournalEntry entry = cursor.next();
+
+        while (null == entry) {
+            final long remaining = deadline - System.nanoTime();
+
+            if (remaining <= 0) {
+                return null;
+            }
+
+            // Registered before looking again, so a record written in between is signalled
+            final long version = writeSignal.register();
+
+            try {
+                entry = cursor.next();
+
+                if (null == entry) {
+                    writeSignal.await(version, remaining);
+                }
+            } finally {
+                writeSignal.unregister();
+            }
+
+            if (null == entry && Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+
+        return entry;
+    }
+
+    public JournalCursorPosition position() {
+        return cursor.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        cursor.close();
+    }
+}
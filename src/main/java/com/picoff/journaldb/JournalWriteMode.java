@@ -0,0 +1,20 @@
+package com.picoff.journaldb;
+
+public enum JournalWriteMode {
+    /**
+     * Opens, locks and closes a dedicated channel for every record and confirms the record with a second write.
+     */
+    CHANNEL_PER_WRITE,
+
+    /**
+     * Keeps the journal channels open for the whole life of the journal and writes each record, including its
+     * confirm flag, with a single positional write from a reusable thread local buffer.
+     */
+    PERSISTENT_CHANNEL,
+
+    /**
+     * Preallocates the journal file to its maximum size, maps it in large windows and encodes records straight into
+     * the mapping. Sync writes force the file once the record is in place.
+     */
+    MEMORY_MAPPED
+}
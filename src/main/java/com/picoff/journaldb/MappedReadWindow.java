@@ -0,0 +1,34 @@
+package com.picoff.journaldb;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+final class MappedReadWindow {
+    private final FileChannel channel;
+    private final long windowSize;
+    private ByteBuffer window;
+    private long windowStart;
+
+    MappedReadWindow(final FileChannel channel, final long windowSize) {
+        this.channel = channel;
+        this.windowSize = windowSize;
+    }
+
+    ByteBuffer map(final long position, final int length, final long fileSize) throws IOException {
+        if (null != window && position >= windowStart && position + length <= windowStart + window.capacity()) {
+            return window;
+        }
+
+        final long mapSize = Math.min(Math.max(windowSize, length), fileSize - position);
+
+        windowStart = position;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(mapSize, Integer.MAX_VALUE));
+
+        return window;
+    }
+
+    int offset(final long position) {
+        return (int) (position - windowStart);
+    }
+}
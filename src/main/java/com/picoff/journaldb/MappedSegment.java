@@ -0,0 +1,104 @@
+package com.picoff.journaldb;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+final class MappedSegment {
+    private static final int PREALLOCATE_CHUNK_SIZE = 1024 * 1024;
+
+    private final MappedByteBuffer[] windows;
+    private final long windowSize;
+
+    MappedSegment(final FileChannel channel, final long capacity, final long windowSize) throws IOException {
+        if (windowSize <= 0 || windowSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Mapped window size must be between 1 and " + Integer.MAX_VALUE + " bytes");
+        }
+
+        preallocate(channel, capacity);
+
+        this.windowSize = windowSize;
+        this.windows = new MappedByteBuffer[(int) ((capacity + windowSize - 1) / windowSize)];
+
+        for (int i = 0; i < windows.length; i++) {
+            final long windowStart = i * windowSize;
+            windows[i] = channel.map(
+                FileChannel.MapMode.READ_WRITE,
+                windowStart,
+                Math.min(windowSize, capacity - windowStart)
+            );
+        }
+    }
+
+    /**
+     * Writes zeros up to the capacity, so the disk space is allocated up front. Mapping alone leaves a sparse file, and
+     * running out of disk space while writing to it kills the process with SIGBUS instead of failing with an
+     * IOException. The file is left at its original size if allocating fails.
+     */
+    private static void preallocate(final FileChannel channel, final long capacity) throws IOException {
+        final long size = channel.size();
+
+        if (size >= capacity) {
+            return;
+        }
+
+        final ByteBuffer zeros = ByteBuffer.allocateDirect((int) Math.min(PREALLOCATE_CHUNK_SIZE, capacity - size));
+
+        try {
+            for (long position = size; position < capacity; ) {
+                zeros.clear();
+                zeros.limit((int) Math.min(zeros.capacity(), capacity - position));
+                position += channel.write(zeros, position);
+            }
+
+            channel.force(false);
+        } catch (final IOException e) {
+            try {
+                channel.truncate(size);
+            } catch (final IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+
+            throw e;
+        }
+    }
+
+    ByteBuffer region(final long position, final int length) {
+        final MappedByteBuffer window = windows[(int) (position / windowSize)];
+        final int offset = (int) (position % windowSize);
+
+        if (offset + length > window.capacity()) {
+            return null;
+        }
+
+        final ByteBuffer region = window.duplicate();
+        region.limit(offset + length);
+        region.position(offset);
+        return region;
+    }
+
+    void put(final long position, final ByteBuffer source) {
+        long writePosition = position;
+
+        while (source.hasRemaining()) {
+            final MappedByteBuffer window = windows[(int) (writePosition / windowSize)];
+            final int offset = (int) (writePosition % windowSize);
+            final int length = Math.min(source.remaining(), window.capacity() - offset);
+
+            final ByteBuffer target = window.duplicate();
+            target.position(offset);
+
+            final ByteBuffer chunk = source.duplicate();
+            chunk.limit(chunk.position() + length);
+            target.put(chunk);
+
+            source.position(source.position() + length);
+            writePosition += length;
+        }
+    }
+
+    void put(final long position, final byte value) {
+        windows[(int) (position / windowSize)].put((int) (position % windowSize), value);
+    }
+}
@@ -0,0 +1,69 @@
+package com.picoff.journaldb;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+final class MpscRingBuffer<E> {
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong producerIndex = new AtomicLong();
+    private final int mask;
+    private long consumerIndex;
+
+    MpscRingBuffer(final int capacity) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring buffer capacity must be a power of two");
+        }
+
+        this.elements = new Object[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    boolean offer(final E element) {
+        long index;
+        int slot;
+
+        while (true) {
+            index = producerIndex.get();
+            slot = (int) index & mask;
+            final long available = sequences.get(slot) - index;
+
+            if (available < 0) {
+                return false;
+            }
+
+            if (0 == available && producerIndex.compareAndSet(index, index + 1)) {
+                break;
+            }
+        }
+
+        elements[slot] = element;
+        sequences.set(slot, index + 1);
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    E poll() {
+        final int slot = (int) consumerIndex & mask;
+
+        if (sequences.get(slot) != consumerIndex + 1) {
+            return null;
+        }
+
+        final E element = (E) elements[slot];
+        elements[slot] = null;
+        sequences.lazySet(slot, consumerIndex + mask + 1);
+        consumerIndex++;
+
+        return element;
+    }
+
+    boolean isEmpty() {
+        return sequences.get((int) consumerIndex & mask) != consumerIndex + 1;
+    }
+}
@@ -0,0 +1,258 @@
+package com.picoff.journaldb;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Processed state of journal records kept as one bit per record sequence. Bits are set with atomic operations in
+ * memory and written to a memory mapped file next to the journal on flush, only for blocks that changed.
+ */
+final class ProcessedStateBitmap implements Closeable {
+    static final byte BITMAP_MAGIC_BYTE = (byte) 'b';
+    static final int BITMAP_HEADER_SIZE = 16;
+    private static final String BITMAP_EXTENSION = ".pst";
+    private static final int BLOCK_SHIFT = 12; // 4096 records per dirty block
+
+    private final FileChannel channel;
+    private final long capacity;
+    private final AtomicLongArray words;
+    private final AtomicLongArray timestamps;
+    private final AtomicLongArray dirtyBlocks;
+    private final MappedByteBuffer mappedWords;
+    private final MappedByteBuffer mappedTimestamps;
+
+    private ProcessedStateBitmap(
+        final FileChannel channel,
+        final long capacity,
+        final boolean withTimestamps
+    ) throws IOException {
+        final int wordCount = (int) ((capacity + 63) >>> 6);
+
+        this.channel = channel;
+        this.capacity = capacity;
+        this.words = new AtomicLongArray(wordCount);
+        this.timestamps = withTimestamps ? new AtomicLongArray((int) capacity) : null;
+        this.dirtyBlocks = new AtomicLongArray((int) (((capacity >>> BLOCK_SHIFT) + 64) >>> 6));
+        this.mappedWords = channel.map(FileChannel.MapMode.READ_WRITE, BITMAP_HEADER_SIZE, wordCount * 8L);
+        this.mappedTimestamps = withTimestamps
+            ? channel.map(FileChannel.MapMode.READ_WRITE, BITMAP_HEADER_SIZE + wordCount * 8L, capacity * 8)
+            : null;
+    }
+
+    static File bitmapFile(final File journalFile) {
+        return Journal.sidecarFile(journalFile, BITMAP_EXTENSION);
+    }
+
+    /**
+     * Opens the bitmap of a journal, creating it or growing it to hold at least the given number of records.
+     */
+    static ProcessedStateBitmap open(
+        final File journalFile,
+        final long minCapacity,
+        final boolean withTimestamps
+    ) throws IOException {
+        final FileChannel channel = FileChannel.open(
+            bitmapFile(journalFile).toPath(),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE
+        );
+
+        try {
+            final ByteBuffer header = ByteBuffer.allocate(BITMAP_HEADER_SIZE);
+
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                // Read until the header is complete or the file ends
+            }
+
+            final boolean isValid = !header.hasRemaining() && BITMAP_MAGIC_BYTE == header.get(0);
+            final boolean hadTimestamps = isValid && Journal.B_TRUE == header.get(1);
+            final long storedCapacity = isValid ? header.getLong(8) : 0;
+
+            final long maxCapacity = withTimestamps ? Integer.MAX_VALUE / 8 : (long) (Integer.MAX_VALUE / 8) << 6;
+
+            if (minCapacity > maxCapacity) {
+                throw new IllegalArgumentException("Journal has too many records for a processed state bitmap");
+            }
+
+            final long capacity = Math.max(storedCapacity, Math.max(minCapacity, 64));
+            final ProcessedStateBitmap bitmap = new ProcessedStateBitmap(channel, capacity, withTimestamps);
+
+            if (isValid) {
+                bitmap.load(channel, storedCapacity, hadTimestamps);
+            }
+
+            header.clear();
+            header.put(BITMAP_MAGIC_BYTE);
+            header.put(withTimestamps ? Journal.B_TRUE : Journal.B_FALSE);
+            header.putLong(8, capacity);
+            header.clear();
+
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+
+            return bitmap;
+        } catch (final IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the bitmap words of a journal without opening it for writing, null if the journal has no bitmap.
+     */
+    static long[] readWords(final File journalFile) throws IOException {
+        final File bitmapFile = bitmapFile(journalFile);
+
+        if (!bitmapFile.isFile()) {
+            return null;
+        }
+
+        try (final FileChannel channel = FileChannel.open(bitmapFile.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < BITMAP_HEADER_SIZE) {
+                return null;
+            }
+
+            final ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, BITMAP_HEADER_SIZE);
+
+            if (BITMAP_MAGIC_BYTE != header.get(0)) {
+                return null;
+            }
+
+            final long[] words = new long[(int) ((header.getLong(8) + 63) >>> 6)];
+            final ByteBuffer stored = channel.map(FileChannel.MapMode.READ_ONLY, BITMAP_HEADER_SIZE, words.length * 8L);
+            stored.asLongBuffer().get(words);
+
+            return words;
+        }
+    }
+
+    private void load(
+        final FileChannel channel,
+        final long storedCapacity,
+        final boolean hadTimestamps
+    ) throws IOException {
+        final int storedWords = (int) ((storedCapacity + 63) >>> 6);
+        final ByteBuffer stored = channel.map(
+            FileChannel.MapMode.READ_ONLY,
+            0,
+            BITMAP_HEADER_SIZE + storedWords * 8L + (hadTimestamps ? storedCapacity * 8 : 0)
+        );
+
+        for (int i = 0; i < storedWords; i++) {
+            words.set(i, stored.getLong(BITMAP_HEADER_SIZE + i * 8));
+        }
+
+        if (hadTimestamps && null != timestamps) {
+            for (int i = 0; i < storedCapacity; i++) {
+                timestamps.set(i, stored.getLong(BITMAP_HEADER_SIZE + storedWords * 8 + i * 8));
+            }
+        }
+
+        // The layout moves when the capacity grows, so everything is rewritten once loaded
+        for (int i = 0; i < words.length(); i++) {
+            mappedWords.putLong(i * 8, words.get(i));
+        }
+
+        if (null != timestamps) {
+            for (int i = 0; i < timestamps.length(); i++) {
+                mappedTimestamps.putLong(i * 8, timestamps.get(i));
+            }
+        }
+    }
+
+    long capacity() {
+        return capacity;
+    }
+
+    boolean covers(final long sequence) {
+        return sequence >= 0 && sequence < capacity;
+    }
+
+    boolean isProcessed(final long sequence) {
+        return 0 != (words.get((int) (sequence >>> 6)) & 1L << sequence);
+    }
+
+    long processedTimestamp(final long sequence) {
+        return null == timestamps ? 0 : timestamps.get((int) sequence);
+    }
+
+    void mark(final long sequence, final boolean state, final long timestamp) {
+        final int word = (int) (sequence >>> 6);
+        final long mask = 1L << sequence;
+
+        if (state) {
+            words.getAndAccumulate(word, mask, (current, bit) -> current | bit);
+        } else {
+            words.getAndAccumulate(word, ~mask, (current, bits) -> current & bits);
+        }
+
+        if (null != timestamps) {
+            timestamps.set((int) sequence, state ? timestamp : 0L);
+        }
+
+        final long block = sequence >>> BLOCK_SHIFT;
+        final int dirtyWord = (int) (block >>> 6);
+        final long dirtyMask = 1L << block;
+
+        if (0 == (dirtyBlocks.get(dirtyWord) & dirtyMask)) {
+            dirtyBlocks.getAndAccumulate(dirtyWord, dirtyMask, (current, bit) -> current | bit);
+        }
+    }
+
+    /**
+     * Writes changed blocks to the mapped file, syncing it to the disk if requested.
+     */
+    synchronized void flush(final boolean sync) throws IOException {
+        final int blockWords = 1 << (BLOCK_SHIFT - 6);
+
+        for (int dirtyWord = 0; dirtyWord < dirtyBlocks.length(); dirtyWord++) {
+            long dirty = dirtyBlocks.getAndSet(dirtyWord, 0L);
+
+            while (0 != dirty) {
+                final long block = (long) dirtyWord << 6 | Long.numberOfTrailingZeros(dirty);
+                dirty &= dirty - 1;
+
+                final int fromWord = (int) (block * blockWords);
+                final int toWord = Math.min(fromWord + blockWords, words.length());
+
+                for (int i = fromWord; i < toWord; i++) {
+                    mappedWords.putLong(i * 8, words.get(i));
+                }
+
+                if (null != timestamps) {
+                    final int fromRecord = (int) (block << BLOCK_SHIFT);
+                    final int toRecord = (int) Math.min(fromRecord + (1L << BLOCK_SHIFT), capacity);
+
+                    for (int i = fromRecord; i < toRecord; i++) {
+                        mappedTimestamps.putLong(i * 8, timestamps.get(i));
+                    }
+                }
+            }
+        }
+
+        if (sync) {
+            mappedWords.force();
+
+            if (null != mappedTimestamps) {
+                mappedTimestamps.force();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush(true);
+        } finally {
+            channel.close();
+        }
+    }
+}
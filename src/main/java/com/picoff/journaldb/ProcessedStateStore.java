@@ -0,0 +1,18 @@
+package com.picoff.journaldb;
+
+public enum ProcessedStateStore {
+    /**
+     * Processed state and timestamp are written in place into the record header.
+     */
+    RECORD_HEADER,
+
+    /**
+     * Processed state is kept in a memory mapped bitmap next to the journal, indexed by record sequence.
+     */
+    BITMAP,
+
+    /**
+     * Like {@link #BITMAP}, also keeping a processed timestamp for every record.
+     */
+    BITMAP_WITH_TIMESTAMPS
+}
@@ -0,0 +1,268 @@
+package com.picoff.journaldb;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * Record payload checksum of one {@link JournalChecksum} algorithm. Instances are reused per thread.
+ */
+abstract class RecordChecksum {
+    private static final ThreadLocal<RecordChecksum[]> CHECKSUMS = ThreadLocal.withInitial(
+        () -> new RecordChecksum[JournalChecksum.values().length]
+    );
+
+    private static final MethodHandle CRC32C_CONSTRUCTOR;
+    private static final MethodHandle CRC32C_UPDATE;
+
+    static {
+        MethodHandle constructor = null;
+        MethodHandle update = null;
+
+        try {
+            // java.util.zip.CRC32C is intrinsified, but only available from Java 9
+            final Class<?> type = Class.forName("java.util.zip.CRC32C");
+            final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+            constructor = lookup
+                .findConstructor(type, MethodType.methodType(void.class))
+                .asType(MethodType.methodType(Checksum.class));
+            update = lookup
+                .findVirtual(type, "update", MethodType.methodType(void.class, ByteBuffer.class))
+                .asType(MethodType.methodType(void.class, Checksum.class, ByteBuffer.class));
+        } catch (final ReflectiveOperationException e) {
+            constructor = null;
+            update = null;
+        }
+
+        CRC32C_CONSTRUCTOR = constructor;
+        CRC32C_UPDATE = update;
+    }
+
+    /**
+     * Reset checksum of the given algorithm owned by the calling thread.
+     */
+    static RecordChecksum get(final JournalChecksum algorithm) {
+        final RecordChecksum[] checksums = CHECKSUMS.get();
+        RecordChecksum checksum = checksums[algorithm.ordinal()];
+
+        if (null == checksum) {
+            checksum = create(algorithm);
+            checksums[algorithm.ordinal()] = checksum;
+        }
+
+        checksum.reset();
+        return checksum;
+    }
+
+    private static RecordChecksum create(final JournalChecksum algorithm) {
+        switch (algorithm) {
+            case CRC32:
+                return new Crc32();
+            case CRC32C:
+                return null != CRC32C_CONSTRUCTOR ? new JdkCrc32c() : new TableCrc32c();
+            default:
+                return new None();
+        }
+    }
+
+    abstract void reset();
+
+    abstract void update(byte[] data, int offset, int length);
+
+    /**
+     * Updates the checksum with the remaining bytes of the buffer, leaving its position at the limit.
+     */
+    abstract void update(ByteBuffer buffer);
+
+    abstract long getValue();
+
+    private static final class Crc32 extends RecordChecksum {
+        private final CRC32 crc32 = new CRC32();
+
+        @Override
+        void reset() {
+            crc32.reset();
+        }
+
+        @Override
+        void update(final byte[] data, final int offset, final int length) {
+            crc32.update(data, offset, length);
+        }
+
+        @Override
+        void update(final ByteBuffer buffer) {
+            crc32.update(buffer);
+        }
+
+        @Override
+        long getValue() {
+            return crc32.getValue();
+        }
+    }
+
+    private static final class JdkCrc32c extends RecordChecksum {
+        private final Checksum crc32c;
+
+        private JdkCrc32c() {
+            try {
+                this.crc32c = (Checksum) CRC32C_CONSTRUCTOR.invokeExact();
+            } catch (final Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        void reset() {
+            crc32c.reset();
+        }
+
+        @Override
+        void update(final byte[] data, final int offset, final int length) {
+            crc32c.update(data, offset, length);
+        }
+
+        @Override
+        void update(final ByteBuffer buffer) {
+            try {
+                CRC32C_UPDATE.invokeExact(crc32c, buffer);
+            } catch (final Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        long getValue() {
+            return crc32c.getValue();
+        }
+    }
+
+    /**
+     * CRC-32C computed eight bytes at a time from lookup tables, for Java 8.
+     */
+    private static final class TableCrc32c extends RecordChecksum {
+        private static final int[][] TABLES = new int[8][256];
+
+        static {
+            for (int i = 0; i < 256; i++) {
+                int crc = i;
+
+                for (int bit = 0; bit < 8; bit++) {
+                    crc = 0 != (crc & 1) ? crc >>> 1 ^ 0x82F63B78 : crc >>> 1;
+                }
+
+                TABLES[0][i] = crc;
+            }
+
+            for (int i = 0; i < 256; i++) {
+                for (int table = 1; table < 8; table++) {
+                    final int previous = TABLES[table - 1][i];
+                    TABLES[table][i] = previous >>> 8 ^ TABLES[0][previous & 0xFF];
+                }
+            }
+        }
+
+        private int crc = 0xFFFFFFFF;
+
+        @Override
+        void reset() {
+            crc = 0xFFFFFFFF;
+        }
+
+        @Override
+        void update(final byte[] data, final int offset, final int length) {
+            int value = crc;
+            int position = offset;
+            final int end = offset + length;
+
+            for (; position + 8 <= end; position += 8) {
+                final int low = value
+                    ^ (data[position] & 0xFF
+                    | (data[position + 1] & 0xFF) << 8
+                    | (data[position + 2] & 0xFF) << 16
+                    | (data[position + 3] & 0xFF) << 24);
+
+                value = TABLES[7][low & 0xFF]
+                    ^ TABLES[6][low >>> 8 & 0xFF]
+                    ^ TABLES[5][low >>> 16 & 0xFF]
+                    ^ TABLES[4][low >>> 24]
+                    ^ TABLES[3][data[position + 4] & 0xFF]
+                    ^ TABLES[2][data[position + 5] & 0xFF]
+                    ^ TABLES[1][data[position + 6] & 0xFF]
+                    ^ TABLES[0][data[position + 7] & 0xFF];
+            }
+
+            for (; position < end; position++) {
+                value = value >>> 8 ^ TABLES[0][(value ^ data[position]) & 0xFF];
+            }
+
+            crc = value;
+        }
+
+        @Override
+        void update(final ByteBuffer buffer) {
+            if (buffer.hasArray()) {
+                update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                buffer.position(buffer.limit());
+                return;
+            }
+
+            // Direct buffers are read a long at a time, in little endian order whatever the order of the buffer
+            final boolean bigEndian = ByteOrder.BIG_ENDIAN == buffer.order();
+            final int end = buffer.limit();
+            int value = crc;
+            int position = buffer.position();
+
+            for (; position + 8 <= end; position += 8) {
+                final long word = bigEndian ? Long.reverseBytes(buffer.getLong(position)) : buffer.getLong(position);
+                final int low = value ^ (int) word;
+                final int high = (int) (word >>> 32);
+
+                value = TABLES[7][low & 0xFF]
+                    ^ TABLES[6][low >>> 8 & 0xFF]
+                    ^ TABLES[5][low >>> 16 & 0xFF]
+                    ^ TABLES[4][low >>> 24]
+                    ^ TABLES[3][high & 0xFF]
+                    ^ TABLES[2][high >>> 8 & 0xFF]
+                    ^ TABLES[1][high >>> 16 & 0xFF]
+                    ^ TABLES[0][high >>> 24];
+            }
+
+            for (; position < end; position++) {
+                value = value >>> 8 ^ TABLES[0][(value ^ buffer.get(position)) & 0xFF];
+            }
+
+            buffer.position(end);
+            crc = value;
+        }
+
+        @Override
+        long getValue() {
+            return ~crc & 0xFFFFFFFFL;
+        }
+    }
+
+    private static final class None extends RecordChecksum {
+        @Override
+        void reset() {
+        }
+
+        @Override
+        void update(final byte[] data, final int offset, final int length) {
+        }
+
+        @Override
+        void update(final ByteBuffer buffer) {
+            buffer.position(buffer.limit());
+        }
+
+        @Override
+        long getValue() {
+            return 0L;
+        }
+    }
+}
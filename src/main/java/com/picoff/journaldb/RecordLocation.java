@@ -0,0 +1,29 @@
+package com.picoff.journaldb;
+
+public class RecordLocation {
+    private final long fileSequence;
+    private final long sequence;
+    private final long position;
+
+    RecordLocation(
+        final long fileSequence,
+        final long sequence,
+        final long position
+    ) {
+        this.fileSequence = fileSequence;
+        this.sequence = sequence;
+        this.position = position;
+    }
+
+    public long getFileSequence() {
+        return fileSequence;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+}
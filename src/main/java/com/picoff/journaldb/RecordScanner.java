@@ -0,0 +1,164 @@
+package com.picoff.journaldb;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+final class RecordScanner {
+    private static final int RECORD_RESERVED_SIZE = 8;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long bufferStart;
+    private long fileSize;
+
+    long recordPosition;
+    byte magicByte;
+    byte integrityFlag;
+    int dataSize;
+    long sequence;
+    long timestamp;
+    boolean processed;
+    long processedTimestamp;
+    byte recordFlags;
+    int blockRecords;
+    int blockRawSize;
+
+    RecordScanner(final FileChannel channel, final int bufferSize) throws IOException {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, Journal.RECORD_HEADER_SIZE));
+        this.buffer.limit(0);
+        this.fileSize = channel.size();
+    }
+
+    long position() {
+        return bufferStart + buffer.position();
+    }
+
+    void seek(final long position) {
+        if (position >= bufferStart && position <= bufferStart + buffer.limit()) {
+            buffer.position((int) (position - bufferStart));
+            return;
+        }
+
+        bufferStart = position;
+        buffer.limit(0);
+    }
+
+    /**
+     * Seeks to the given position dropping buffered bytes, which may be stale if the file is still being written.
+     */
+    void reset(final long position) {
+        bufferStart = position;
+        buffer.limit(0);
+    }
+
+    /**
+     * Reads ahead as much as fits into the buffer without requiring any of it to be available.
+     */
+    void fill() throws IOException {
+        bufferStart = position();
+        buffer.compact();
+        channel.read(buffer, bufferStart + buffer.position());
+        buffer.flip();
+    }
+
+    boolean hasRemaining() throws IOException {
+        if (position() < fileSize) {
+            return true;
+        }
+
+        fileSize = channel.size();
+        return position() < fileSize;
+    }
+
+    long recordEnd() {
+        return recordPosition + Journal.RECORD_HEADER_SIZE + dataSize + Journal.RECORD_CHECKSUM_SIZE;
+    }
+
+    boolean isBlock() {
+        return Journal.RECORD_FLAG_DEFLATE_BLOCK == recordFlags;
+    }
+
+    /**
+     * A void record fills the allocation of a write whose encoder failed, it holds no entry.
+     */
+    boolean isVoid() {
+        return Journal.RECORD_FLAG_VOID == recordFlags;
+    }
+
+    /**
+     * Last sequence held by the record, compressed blocks hold several.
+     */
+    long lastSequence() {
+        return isBlock() ? sequence + blockRecords - 1 : sequence;
+    }
+
+    void readHeader() throws IOException {
+        require(Journal.RECORD_HEADER_SIZE);
+
+        recordPosition = position();
+        magicByte = buffer.get();
+        integrityFlag = buffer.get();
+        dataSize = buffer.getInt();
+        sequence = buffer.getLong();
+        timestamp = buffer.getLong();
+        processed = Journal.B_TRUE == buffer.get();
+        processedTimestamp = buffer.getLong();
+        recordFlags = buffer.get();
+        blockRecords = buffer.getInt();
+        blockRawSize = buffer.getInt();
+        buffer.position(buffer.position() + RECORD_RESERVED_SIZE);
+    }
+
+    void readData(final byte[] data) throws IOException {
+        final int buffered = Math.min(buffer.remaining(), data.length);
+        buffer.get(data, 0, buffered);
+
+        if (buffered == data.length) {
+            return;
+        }
+
+        final long position = position();
+
+        if (data.length - buffered <= buffer.capacity()) {
+            require(data.length - buffered);
+            buffer.get(data, buffered, data.length - buffered);
+            return;
+        }
+
+        final ByteBuffer target = ByteBuffer.wrap(data, buffered, data.length - buffered);
+
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position() - buffered) < 0) {
+                throw new EOFException();
+            }
+        }
+
+        seek(position + data.length - buffered);
+    }
+
+    long readLong() throws IOException {
+        require(Long.BYTES);
+        return buffer.getLong();
+    }
+
+    private void require(final int length) throws IOException {
+        if (buffer.remaining() >= length) {
+            return;
+        }
+
+        bufferStart = position();
+        buffer.compact();
+
+        while (buffer.position() < length) {
+            if (channel.read(buffer, bufferStart + buffer.position()) < 0) {
+                buffer.flip();
+                throw new EOFException();
+            }
+        }
+
+        buffer.flip();
+    }
+}
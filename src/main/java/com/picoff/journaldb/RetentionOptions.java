@@ -0,0 +1,91 @@
+package com.picoff.journaldb;
+
+import com.picoff.commons.unit.DigitalUnit;
+
+import java.util.concurrent.TimeUnit;
+
+public class RetentionOptions {
+    private long interval = 1;
+    private TimeUnit intervalUnit = TimeUnit.MINUTES;
+    private long maxAge = 0;
+    private TimeUnit maxAgeUnit = TimeUnit.DAYS;
+    private long maxSize = 0;
+    private DigitalUnit maxSizeUnit = DigitalUnit.GIGABYTE;
+    private boolean deleteProcessed = false;
+    private double compactionThreshold = 0;
+
+    public long getInterval() {
+        return interval;
+    }
+
+    public TimeUnit getIntervalUnit() {
+        return intervalUnit;
+    }
+
+    public RetentionOptions setInterval(final long interval, final TimeUnit unit) {
+        this.interval = interval;
+        this.intervalUnit = unit;
+        return this;
+    }
+
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    public TimeUnit getMaxAgeUnit() {
+        return maxAgeUnit;
+    }
+
+    /**
+     * Delete archived journals archived longer ago than the given age, 0 disables the limit.
+     */
+    public RetentionOptions setMaxAge(final long maxAge, final TimeUnit unit) {
+        this.maxAge = maxAge;
+        this.maxAgeUnit = unit;
+        return this;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public DigitalUnit getMaxSizeUnit() {
+        return maxSizeUnit;
+    }
+
+    /**
+     * Delete the oldest archived journals while all archived journals together are larger than the given size,
+     * 0 disables the limit.
+     */
+    public RetentionOptions setMaxSize(final long maxSize, final DigitalUnit unit) {
+        this.maxSize = maxSize;
+        this.maxSizeUnit = unit;
+        return this;
+    }
+
+    public boolean deleteProcessed() {
+        return deleteProcessed;
+    }
+
+    /**
+     * Delete archived journals in which every entry is marked processed.
+     */
+    public RetentionOptions setDeleteProcessed(final boolean deleteProcessed) {
+        this.deleteProcessed = deleteProcessed;
+        return this;
+    }
+
+    public double getCompactionThreshold() {
+        return compactionThreshold;
+    }
+
+    /**
+     * Rewrite archived journals in which at least the given fraction of entries is processed, keeping only the
+     * unprocessed entries. 0 disables compaction. Readers of a journal must be closed before it is compacted, they keep
+     * reading the original file.
+     */
+    public RetentionOptions setCompactionThreshold(final double compactionThreshold) {
+        this.compactionThreshold = compactionThreshold;
+        return this;
+    }
+}
@@ -0,0 +1,307 @@
+package com.picoff.journaldb;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Deletes and compacts archived journals of a {@link JournalDB} according to its {@link RetentionOptions}.
+ */
+final class RetentionService implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RetentionService.class);
+    private static final String COMPACTION_EXTENSION = ".compacting";
+    private static final int SCAN_BUFFER_SIZE = 1024 * 1024;
+
+    private final JournalDB journalDB;
+    private final RetentionOptions options;
+    private final Thread thread;
+
+    RetentionService(final JournalDB journalDB, final RetentionOptions options) {
+        this.journalDB = journalDB;
+        this.options = options;
+        this.thread = new Thread(this::work);
+        this.thread.setName("jdb-retention");
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    private void work() {
+        final long intervalNanos = options.getIntervalUnit().toNanos(options.getInterval());
+
+        while (true) {
+            LockSupport.parkNanos(intervalNanos);
+
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+
+            try {
+                apply();
+            } catch (final IOException e) {
+                LOGGER.error("Failure in journal retention", e);
+            }
+        }
+    }
+
+    synchronized void apply() throws IOException {
+        final long now = System.currentTimeMillis();
+        final long maxAge = options.getMaxAgeUnit().toMillis(options.getMaxAge());
+        final long maxSize = (long) options.getMaxSizeUnit().toBytes(options.getMaxSize());
+        final boolean scanProcessed = options.deleteProcessed() || options.getCompactionThreshold() > 0;
+        final JournalCatalog catalog = journalDB.catalog();
+        final long firstConsumed = journalDB.consumerOffsets().minFileSequence();
+        final List<JournalCatalogEntry> retained = new ArrayList<>();
+        long consumedSize = 0;
+        int held = 0;
+
+        for (final JournalCatalogEntry entry : catalog.entries()) {
+            // Journals left behind without being archived may still be recovered and are kept
+            if (!entry.isArchived()) {
+                continue;
+            }
+
+            final File file = journalDB.getJournalFile(entry.getFileSequence());
+
+            if (!file.isFile()) {
+                catalog.remove(entry.getFileSequence());
+                continue;
+            }
+
+            // Compaction moves records and deletion drops them, either would break a committed consumer offset at
+            // or before this journal
+            if (entry.getFileSequence() >= firstConsumed) {
+                consumedSize += entry.getSize();
+
+                if (maxAge > 0 && entry.getArchivedAt() < now - maxAge) {
+                    held++;
+                }
+
+                continue;
+            }
+
+            if (maxAge > 0 && entry.getArchivedAt() < now - maxAge) {
+                delete(file, entry.getFileSequence());
+                continue;
+            }
+
+            JournalCatalogEntry scanned = entry;
+
+            if (scanProcessed) {
+                final List<long[]> unprocessed = new ArrayList<>();
+                final long[] counts = scanUnprocessed(file, unprocessed);
+                final long total = counts[0];
+                final long processed = counts[1];
+
+                if (processed == total && options.deleteProcessed()) {
+                    delete(file, entry.getFileSequence());
+                    continue;
+                }
+
+                if (processed < total && processed > 0 && processed >= options.getCompactionThreshold() * total) {
+                    compact(file, unprocessed);
+                    scanned = entry.withRecords(counts[2], total - processed, file.length()).withProcessedCount(0);
+                } else {
+                    scanned = entry.withProcessedCount(processed);
+                }
+
+                catalog.put(scanned);
+            }
+
+            retained.add(scanned);
+        }
+
+        if (maxSize > 0) {
+            long totalSize = consumedSize;
+
+            for (final JournalCatalogEntry entry : retained) {
+                totalSize += entry.getSize();
+            }
+
+            for (int i = 0; i < retained.size() && totalSize > maxSize; i++) {
+                final JournalCatalogEntry entry = retained.get(i);
+                totalSize -= entry.getSize();
+                delete(journalDB.getJournalFile(entry.getFileSequence()), entry.getFileSequence());
+            }
+
+            if (totalSize > maxSize) {
+                held++;
+            }
+        }
+
+        if (held > 0) {
+            LOGGER.warn(
+                "Retention limits exceeded by journals from {} on, kept until committed consumer offsets pass them",
+                firstConsumed
+            );
+        }
+    }
+
+    /**
+     * Counts all and processed records of a journal, collecting the ranges of consecutive unprocessed records. Returns
+     * the counts followed by the sequence of the first record kept by a compaction.
+     */
+    private static long[] scanUnprocessed(final File file, final List<long[]> unprocessed) throws IOException {
+        final long[] bitmap = ProcessedStateBitmap.readWords(file);
+        long total = 0;
+        long processed = 0;
+        long firstUnprocessed = -1;
+
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final RecordScanner scanner = new RecordScanner(channel, SCAN_BUFFER_SIZE);
+            scanner.seek(Journal.FILE_HEADER_SIZE);
+
+            while (scanner.hasRemaining()) {
+                try {
+                    scanner.readHeader();
+                } catch (final EOFException e) {
+                    break;
+                }
+
+                if (Journal.RECORD_MAGIC_BYTE != scanner.magicByte) {
+                    break;
+                }
+
+                // A compressed block is kept whole while any of its records is unprocessed, void records never are
+                boolean isProcessed = true;
+
+                for (long sequence = scanner.sequence; sequence <= scanner.lastSequence(); sequence++) {
+                    final boolean recordProcessed = scanner.isVoid() || (null != bitmap && sequence >> 6 < bitmap.length
+                        ? 0 != (bitmap[(int) (sequence >> 6)] & 1L << sequence)
+                        : scanner.processed);
+
+                    total++;
+
+                    if (recordProcessed) {
+                        processed++;
+                    }
+
+                    isProcessed &= recordProcessed;
+                }
+
+                if (!isProcessed && firstUnprocessed < 0) {
+                    firstUnprocessed = scanner.sequence;
+                }
+
+                if (!isProcessed) {
+                    final long[] last = unprocessed.isEmpty() ? null : unprocessed.get(unprocessed.size() - 1);
+
+                    if (null != last && last[1] == scanner.recordPosition) {
+                        last[1] = scanner.recordEnd();
+                    } else {
+                        unprocessed.add(new long[]{scanner.recordPosition, scanner.recordEnd()});
+                    }
+                }
+
+                scanner.seek(scanner.recordEnd());
+            }
+        }
+
+        return new long[]{total, processed, firstUnprocessed};
+    }
+
+    /**
+     * Rewrites the journal with only the given record ranges, copied with bulk channel transfers. Record sequences
+     * are kept, the sequence index is dropped as its positions no longer apply. The end and the safe position in the
+     * header move to the new end of the journal, so recovery never scans from a position of the original file. Open
+     * readers keep reading the original file and must be closed before compaction.
+     */
+    private static void compact(final File file, final List<long[]> ranges) throws IOException {
+        final File compacted = new File(file.getPath() + COMPACTION_EXTENSION);
+
+        try (
+            final FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            final FileChannel target = FileChannel.open(
+                compacted.toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE
+            )
+        ) {
+            transferFully(source, 0, Journal.FILE_HEADER_SIZE, target);
+
+            for (final long[] range : ranges) {
+                transferFully(source, range[0], range[1] - range[0], target);
+            }
+
+            final ByteBuffer sequence = ByteBuffer.allocate(8);
+
+            while (sequence.hasRemaining()) {
+                if (source.read(sequence, 19 + sequence.position()) < 0) {
+                    throw new EOFException();
+                }
+            }
+
+            final long endPosition = target.size();
+
+            writeLong(target, 27, endPosition); // End position
+            writeLong(target, 53, endPosition); // Safe write position
+            writeLong(target, 61, sequence.getLong(0)); // Safe sequence counter
+
+            target.force(true);
+        }
+
+        Files.move(
+            compacted.toPath(),
+            file.toPath(),
+            StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING
+        );
+        Files.deleteIfExists(JournalIndex.indexFile(file).toPath());
+    }
+
+    private static void writeLong(final FileChannel channel, final long position, final long value) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(8);
+        buffer.putLong(0, value);
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private static void transferFully(
+        final FileChannel source,
+        final long position,
+        final long length,
+        final FileChannel target
+    ) throws IOException {
+        long transferred = 0;
+
+        while (transferred < length) {
+            transferred += source.transferTo(position + transferred, length - transferred, target);
+        }
+    }
+
+    private void delete(final File file, final long fileSequence) throws IOException {
+        Files.deleteIfExists(file.toPath());
+        Files.deleteIfExists(JournalIndex.indexFile(file).toPath());
+        Files.deleteIfExists(ProcessedStateBitmap.bitmapFile(file).toPath());
+
+        journalDB.catalog().remove(fileSequence);
+    }
+
+    @Override
+    public void close() {
+        thread.interrupt();
+
+        try {
+            thread.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.picoff.journaldb;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits of a single journal in addition to the journal max size. A journal is relocated as soon as any limit is
+ * reached.
+ */
+public class RotationPolicy {
+    private long maxRecords = 0;
+    private long interval = 0;
+    private TimeUnit intervalUnit = TimeUnit.HOURS;
+
+    public long getMaxRecords() {
+        return maxRecords;
+    }
+
+    /**
+     * Relocate once a journal holds the given number of entries, 0 disables the limit. Batches are split at the limit.
+     */
+    public RotationPolicy setMaxRecords(final long maxRecords) {
+        this.maxRecords = maxRecords;
+        return this;
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    public TimeUnit getIntervalUnit() {
+        return intervalUnit;
+    }
+
+    /**
+     * Relocate at the end of each interval, aligned to the wall clock in UTC, so that with 1 hour every journal holds
+     * entries of a single hour. 0 disables the limit.
+     */
+    public RotationPolicy setInterval(final long interval, final TimeUnit unit) {
+        this.interval = interval;
+        this.intervalUnit = unit;
+        return this;
+    }
+}
@@ -0,0 +1,205 @@
+package com.picoff.journaldb;
+
+import com.picoff.journaldb.exception.DatabaseDirectoryIsAFileException;
+import com.picoff.journaldb.exception.DatabaseLockedException;
+import com.picoff.journaldb.exception.ShardCountMismatchException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ShardedJournalDB implements Closeable {
+    private static final long KEY_MIX = 0x9E3779B97F4A7C15L;
+
+    private final JournalDB[] shards;
+    private final FileChannel metaChannel;
+    private final FileLock metaLock;
+    private final AtomicInteger affinityCounter = new AtomicInteger();
+    private final ThreadLocal<JournalDB> affinity;
+
+    public ShardedJournalDB(final ShardedJournalDBOptions options) throws IOException {
+        final List<File> dataDirectories = options.getDataDirectories();
+        final int shardCount = options.getShardCount();
+
+        if (null == dataDirectories || dataDirectories.isEmpty()) {
+            throw new IllegalArgumentException("At least one data directory is required");
+        }
+
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+
+        for (final File dataDirectory : dataDirectories) {
+            if (dataDirectory.exists() && dataDirectory.isFile()) {
+                throw new DatabaseDirectoryIsAFileException();
+            }
+
+            if (!dataDirectory.exists()) {
+                dataDirectory.mkdirs();
+            }
+        }
+
+        this.metaChannel = FileChannel.open(
+            new File(dataDirectories.get(0), "journal_meta").toPath(),
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.SYNC,
+            StandardOpenOption.CREATE
+        );
+
+        this.metaLock = metaChannel.tryLock();
+
+        if (null == metaLock) {
+            metaChannel.close();
+            throw new DatabaseLockedException();
+        }
+
+        final boolean isNewDatabase = 0 == metaChannel.size();
+        final MappedByteBuffer metadata = metaChannel.map(FileChannel.MapMode.READ_WRITE, 0, 100);
+
+        if (isNewDatabase) {
+            metadata.putInt(0, shardCount);
+        } else if (metadata.getInt(0) != shardCount) {
+            close();
+            throw new ShardCountMismatchException();
+        }
+
+        this.shards = new JournalDB[shardCount];
+
+        try {
+            for (int i = 0; i < shardCount; i++) {
+                final File parent = dataDirectories.get(i % dataDirectories.size());
+                shards[i] = new JournalDB(options.getShardOptions(), new File(parent, "shard_" + i));
+            }
+        } catch (final IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+
+        this.affinity = ThreadLocal.withInitial(
+            () -> shards[Math.floorMod(affinityCounter.getAndIncrement(), shards.length)]
+        );
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public JournalDB getShard(final int shard) {
+        return shards[shard];
+    }
+
+    public JournalDB shardFor(final long key) {
+        return shards[Math.floorMod((int) ((key * KEY_MIX) >>> 32), shards.length)];
+    }
+
+    public void write(final byte[] bytes) throws IOException {
+        affinity.get().write(bytes);
+    }
+
+    public void write(final byte[] bytes, final boolean sync) throws IOException {
+        affinity.get().write(bytes, sync);
+    }
+
+    public void write(final ByteBuffer payload) throws IOException {
+        affinity.get().write(payload);
+    }
+
+    public void write(final ByteBuffer payload, final boolean sync) throws IOException {
+        affinity.get().write(payload, sync);
+    }
+
+    /**
+     * Writes the whole batch to the shard of the calling thread, so its records stay consecutive.
+     */
+    public void writeBatch(final List<byte[]> payloads) throws IOException {
+        affinity.get().writeBatch(payloads);
+    }
+
+    public void writeBatch(final List<byte[]> payloads, final boolean sync) throws IOException {
+        affinity.get().writeBatch(payloads, sync);
+    }
+
+    public void writeBatch(final ByteBuffer[] payloads) throws IOException {
+        affinity.get().writeBatch(payloads);
+    }
+
+    public void writeBatch(final ByteBuffer[] payloads, final boolean sync) throws IOException {
+        affinity.get().writeBatch(payloads, sync);
+    }
+
+    public void write(final long key, final byte[] bytes) throws IOException {
+        shardFor(key).write(bytes);
+    }
+
+    public void write(final long key, final byte[] bytes, final boolean sync) throws IOException {
+        shardFor(key).write(bytes, sync);
+    }
+
+    public void write(final long key, final ByteBuffer payload) throws IOException {
+        shardFor(key).write(payload);
+    }
+
+    public void write(final long key, final ByteBuffer payload, final boolean sync) throws IOException {
+        shardFor(key).write(payload, sync);
+    }
+
+    /**
+     * Writes the whole batch to the shard of the key, so its records stay consecutive and in order with the other
+     * writes of the key.
+     */
+    public void writeBatch(final long key, final List<byte[]> payloads) throws IOException {
+        shardFor(key).writeBatch(payloads);
+    }
+
+    public void writeBatch(final long key, final List<byte[]> payloads, final boolean sync) throws IOException {
+        shardFor(key).writeBatch(payloads, sync);
+    }
+
+    public void writeBatch(final long key, final ByteBuffer[] payloads) throws IOException {
+        shardFor(key).writeBatch(payloads);
+    }
+
+    public void writeBatch(final long key, final ByteBuffer[] payloads, final boolean sync) throws IOException {
+        shardFor(key).writeBatch(payloads, sync);
+    }
+
+    public void flush() {
+        for (final JournalDB shard : shards) {
+            shard.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+
+        if (null != shards) {
+            for (final JournalDB shard : shards) {
+                if (null == shard) {
+                    continue;
+                }
+
+                try {
+                    shard.close();
+                } catch (final IOException e) {
+                    failure = e;
+                }
+            }
+        }
+
+        metaLock.close();
+        metaChannel.close();
+
+        if (null != failure) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.picoff.journaldb;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+public class ShardedJournalDBOptions {
+    private List<File> dataDirectories;
+    private int shardCount = Runtime.getRuntime().availableProcessors();
+    private JournalDBOptions shardOptions = new JournalDBOptions();
+
+    public List<File> getDataDirectories() {
+        return dataDirectories;
+    }
+
+    public ShardedJournalDBOptions setDataDirectories(final File... dataDirectories) {
+        this.dataDirectories = Arrays.asList(dataDirectories);
+        return this;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public ShardedJournalDBOptions setShardCount(final int shardCount) {
+        this.shardCount = shardCount;
+        return this;
+    }
+
+    public JournalDBOptions getShardOptions() {
+        return shardOptions;
+    }
+
+    public ShardedJournalDBOptions setShardOptions(final JournalDBOptions shardOptions) {
+        this.shardOptions = shardOptions;
+        return this;
+    }
+}
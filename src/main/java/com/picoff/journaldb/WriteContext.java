@@ -0,0 +1,274 @@
+package com.picoff.journaldb;
+
+import com.picoff.commons.functional.Handler;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+
+final class WriteContext {
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+    private static final int RECORD_OVERHEAD = Journal.RECORD_HEADER_SIZE + Journal.RECORD_CHECKSUM_SIZE;
+    private static final ThreadLocal<WriteContext> CONTEXT = ThreadLocal.withInitial(WriteContext::new);
+
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(INITIAL_CAPACITY);
+    private byte[] blockInput = new byte[0];
+    private byte[] blockOutput = new byte[0];
+    private Deflater deflater;
+
+    private byte[] bytes;
+    private ByteBuffer source;
+    private Handler<ByteBuffer> encoder;
+    private RuntimeException encoderFailure;
+    private int payloadSize;
+
+    long sequence;
+    long startPosition;
+    long endPosition;
+    long timestamp;
+    int blockRecords;
+    int blockRawSize;
+
+    private WriteContext() {
+    }
+
+    static WriteContext get() {
+        return CONTEXT.get();
+    }
+
+    ByteBuffer buffer(final int size) {
+        if (size > buffer.capacity()) {
+            if (size > MAX_RETAINED_CAPACITY) {
+                return ByteBuffer.allocateDirect(size);
+            }
+
+            buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(size - 1) << 1);
+        }
+
+        buffer.clear();
+        buffer.limit(size);
+
+        return buffer;
+    }
+
+    void payload(final byte[] bytes) {
+        this.bytes = bytes;
+        this.payloadSize = bytes.length;
+        clearBlock();
+    }
+
+    void payload(final ByteBuffer source) {
+        this.source = source;
+        this.payloadSize = source.remaining();
+        clearBlock();
+    }
+
+    /**
+     * The encoder runs once the record is allocated, writing straight into the payload region of the record.
+     */
+    void payload(final int size, final Handler<ByteBuffer> encoder) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Payload size can not be negative");
+        }
+
+        this.encoder = encoder;
+        this.payloadSize = size;
+        clearBlock();
+    }
+
+    /**
+     * Packs the payloads from the given offset on into one deflate compressed block payload. Returns false, leaving no
+     * payload, if the block would not be smaller than the payloads.
+     */
+    boolean payloadBlock(final ByteBuffer[] payloads, final int offset) {
+        long rawSize = 0;
+
+        for (int i = offset; i < payloads.length; i++) {
+            rawSize += Integer.BYTES + payloads[i].remaining();
+        }
+
+        if (rawSize > Integer.MAX_VALUE - RECORD_OVERHEAD) {
+            return false;
+        }
+
+        final byte[] input = scratch(blockInput, (int) rawSize);
+        final byte[] output = scratch(blockOutput, (int) rawSize);
+        final ByteBuffer packed = ByteBuffer.wrap(input);
+
+        for (int i = offset; i < payloads.length; i++) {
+            packed.putInt(payloads[i].remaining());
+            packed.put(payloads[i].duplicate());
+        }
+
+        if (null == deflater) {
+            deflater = new Deflater(Deflater.BEST_SPEED);
+        } else {
+            deflater.reset();
+        }
+
+        deflater.setInput(input, 0, (int) rawSize);
+        deflater.finish();
+
+        int compressedSize = 0;
+
+        while (!deflater.finished() && compressedSize < rawSize) {
+            compressedSize += deflater.deflate(output, compressedSize, (int) rawSize - compressedSize);
+        }
+
+        if (input.length <= MAX_RETAINED_CAPACITY) {
+            blockInput = input;
+            blockOutput = output;
+        }
+
+        if (!deflater.finished()) {
+            return false;
+        }
+
+        payload(ByteBuffer.wrap(output, 0, compressedSize));
+        blockRecords = payloads.length - offset;
+        blockRawSize = (int) rawSize;
+
+        return true;
+    }
+
+    private static byte[] scratch(final byte[] current, final int size) {
+        if (current.length >= size) {
+            return current;
+        }
+
+        return new byte[Math.max(size, Math.min(current.length * 2, MAX_RETAINED_CAPACITY))];
+    }
+
+    void clearBlock() {
+        blockRecords = 0;
+        blockRawSize = 0;
+    }
+
+    /**
+     * Number of record sequences the current payload takes.
+     */
+    int recordCount() {
+        return blockRecords > 0 ? blockRecords : 1;
+    }
+
+    byte recordFlags() {
+        return blockRecords > 0 ? Journal.RECORD_FLAG_DEFLATE_BLOCK : 0;
+    }
+
+    int payloadSize() {
+        return payloadSize;
+    }
+
+    void clearPayload() {
+        bytes = null;
+        source = null;
+        encoder = null;
+        encoderFailure = null;
+        payloadSize = 0;
+    }
+
+    /**
+     * Rethrows the failure of the encoder of the record just written, which was written as a void record.
+     */
+    void checkEncoded() {
+        if (null != encoderFailure) {
+            throw encoderFailure;
+        }
+    }
+
+    void putPayload(final ByteBuffer record, final JournalChecksum algorithm) {
+        final int payloadStart = record.position();
+        final int payloadEnd = payloadStart + payloadSize;
+        final int recordLimit = record.limit();
+
+        if (null != bytes) {
+            record.put(bytes);
+        } else if (null != source) {
+            final int sourceStart = source.position();
+            record.put(source);
+            source.position(sourceStart);
+        } else {
+            encode(record, payloadStart, payloadEnd);
+        }
+
+        record.limit(payloadEnd);
+        record.position(payloadStart);
+
+        final RecordChecksum checksum = RecordChecksum.get(algorithm);
+        checksum.update(record);
+
+        record.limit(recordLimit);
+        record.putLong(checksum.getValue());
+    }
+
+    /**
+     * Passes the zero filled payload region of the record to the encoder. If the encoder throws, the record is flagged
+     * void, so it still fills its allocation but is skipped by all readers, and the failure is kept for
+     * {@link #checkEncoded}.
+     */
+    private void encode(final ByteBuffer record, final int payloadStart, final int payloadEnd) {
+        zero(record, payloadStart, payloadEnd);
+
+        final ByteBuffer target = record.duplicate();
+        target.limit(payloadEnd);
+        target.position(payloadStart);
+
+        try {
+            encoder.handle(target.slice());
+        } catch (final RuntimeException e) {
+            encoderFailure = e;
+            record.put(payloadStart - Journal.RECORD_HEADER_SIZE + 31, Journal.RECORD_FLAG_VOID);
+        }
+
+        record.position(payloadEnd);
+    }
+
+    private static void zero(final ByteBuffer record, final int start, final int end) {
+        int position = start;
+
+        for (; position + Long.BYTES <= end; position += Long.BYTES) {
+            record.putLong(position, 0L);
+        }
+
+        for (; position < end; position++) {
+            record.put(position, (byte) 0);
+        }
+    }
+
+    static void putRecordHeader(
+        final ByteBuffer record,
+        final int dataSize,
+        final long sequence,
+        final long timestamp,
+        final byte integrity
+    ) {
+        putRecordHeader(record, dataSize, sequence, timestamp, integrity, (byte) 0, 0, 0);
+    }
+
+    static void putRecordHeader(
+        final ByteBuffer record,
+        final int dataSize,
+        final long sequence,
+        final long timestamp,
+        final byte integrity,
+        final byte flags,
+        final int blockRecords,
+        final int blockRawSize
+    ) {
+        record.put(Journal.RECORD_MAGIC_BYTE); // magic byte
+        record.put(integrity); // record integrity marker
+        record.putInt(dataSize); // payload size
+        record.putLong(sequence); // sequence
+        record.putLong(timestamp); // timestamp
+        record.put(Journal.B_FALSE); // processed flag
+        record.putLong(0L); // processed timestamp
+        record.put(flags); // record flags
+        record.putInt(blockRecords); // records in block
+        record.putInt(blockRawSize); // uncompressed block size
+        record.putLong(0L); // reserved
+    }
+
+    void putRecordHeader(final ByteBuffer record, final long sequence, final byte integrity) {
+        putRecordHeader(record, payloadSize, sequence, timestamp, integrity, recordFlags(), blockRecords, blockRawSize);
+    }
+}
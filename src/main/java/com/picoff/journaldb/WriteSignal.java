@@ -0,0 +1,57 @@
+package com.picoff.journaldb;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Wakes threads waiting for new records. Signalling costs writers a read of the waiter count, the version is only
+ * incremented and waiters unparked while someone is waiting. Waiters register before their last look for new records
+ * and writers signal after releasing their records with the journal's writer count, so no record is missed.
+ */
+final class WriteSignal {
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Queue<Thread> waiters = new ConcurrentLinkedQueue<>();
+
+    void signal() {
+        if (0 != waiting.get()) {
+            version.incrementAndGet();
+
+            for (final Thread waiter : waiters) {
+                LockSupport.unpark(waiter);
+            }
+        }
+    }
+
+    /**
+     * Registers the current thread as waiting and returns the version to pass to {@link #await}.
+     */
+    long register() {
+        waiters.add(Thread.currentThread());
+        waiting.incrementAndGet();
+
+        return version.get();
+    }
+
+    void unregister() {
+        waiting.decrementAndGet();
+        waiters.remove(Thread.currentThread());
+    }
+
+    /**
+     * Waits until the version moves past the one seen, the timeout passes or the thread is interrupted.
+     */
+    void await(final long seenVersion, final long timeoutNanos) {
+        final Thread thread = Thread.currentThread();
+        final long deadline = System.nanoTime() + timeoutNanos;
+        long remaining = timeoutNanos;
+
+        while (version.get() == seenVersion && remaining > 0 && !thread.isInterrupted()) {
+            LockSupport.parkNanos(this, remaining);
+            remaining = deadline - System.nanoTime();
+        }
+    }
+}
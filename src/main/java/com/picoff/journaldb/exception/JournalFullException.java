@@ -0,0 +1,6 @@
+package com.picoff.journaldb.exception;
+
+import java.io.IOException;
+
+public class JournalFullException extends IOException {
+}
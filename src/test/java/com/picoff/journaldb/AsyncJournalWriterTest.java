@@ -0,0 +1,197 @@
+package com.picoff.journaldb;
+
+import com.picoff.commons.unit.DigitalUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class AsyncJournalWriterTest {
+    private final TemporaryFolder testFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        testFolder.create();
+    }
+
+    @After
+    public void tearDown() {
+        testFolder.delete();
+    }
+
+    @Test
+    public void it_acknowledges_writes_with_record_locations() throws Exception {
+        final JournalDBOptions journalDBOptions = new JournalDBOptions();
+        journalDBOptions.setDataDirectory(testFolder.newFolder());
+        final JournalDB journalDB = new JournalDB(journalDBOptions);
+
+        final AsyncJournalWriter writer = new AsyncJournalWriter(
+            journalDB,
+            new AsyncJournalWriterOptions().setCapacity(256).setMaxBatchSize(64)
+        );
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final List<CompletableFuture<RecordLocation>> futures = new ArrayList<>();
+
+        for (int i = 0; i < 8; i++) {
+            final int producer = i;
+            executor.execute(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    final ByteBuffer payload = ByteBuffer.allocate(8);
+                    payload.putInt(0, producer);
+                    payload.putInt(4, j);
+
+                    final CompletableFuture<RecordLocation> future = writer.write(payload, 0 == j % 100);
+
+                    synchronized (futures) {
+                        futures.add(future);
+                    }
+                }
+            });
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        final Set<Long> sequences = new HashSet<>();
+        final Set<Long> positions = new HashSet<>();
+
+        for (final CompletableFuture<RecordLocation> future : futures) {
+            final RecordLocation location = future.get(1, TimeUnit.MINUTES);
+
+            assertThat(location.getFileSequence()).isEqualTo(0);
+
+            sequences.add(location.getSequence());
+            positions.add(location.getPosition());
+        }
+
+        assertThat(sequences).hasSize(8000);
+        assertThat(positions).hasSize(8000);
+        assertThat(positions).contains((long) Journal.FILE_HEADER_SIZE);
+        assertThat(positions).contains((long) Journal.FILE_HEADER_SIZE + 7999 * 64);
+
+        writer.close();
+        journalDB.close();
+    }
+
+    @Test
+    public void it_acknowledges_locations_of_batches_moved_by_relocation() throws Exception {
+        final JournalDBOptions journalDBOptions = new JournalDBOptions();
+        journalDBOptions.setDataDirectory(testFolder.newFolder());
+        journalDBOptions.setJournalMaxSize(4, DigitalUnit.KILOBYTE);
+        final JournalDB journalDB = new JournalDB(journalDBOptions);
+
+        final AsyncJournalWriter writer = new AsyncJournalWriter(
+            journalDB,
+            new AsyncJournalWriterOptions().setCapacity(256).setMaxBatchSize(16)
+        );
+
+        final List<CompletableFuture<RecordLocation>> futures = new ArrayList<>();
+
+        for (int i = 0; i < 1000; i++) {
+            futures.add(writer.write(ByteBuffer.allocate(8).putInt(0, i)));
+        }
+
+        final List<RecordLocation> locations = new ArrayList<>();
+
+        for (final CompletableFuture<RecordLocation> future : futures) {
+            locations.add(future.get(1, TimeUnit.MINUTES));
+        }
+
+        writer.close();
+        final long lastSequence = journalDB.getSequence();
+        journalDB.close();
+
+        assertThat(lastSequence).isGreaterThan(1L);
+
+        final Map<String, Integer> payloads = new HashMap<>();
+
+        for (long fileSequence = 0; fileSequence <= lastSequence; fileSequence++) {
+            final long journal = fileSequence;
+            final JournalReader reader = journalDB.createReader(
+                new JournalReaderOptions().setFailOnNotArchived(false).setFailOnNotClosedGracefully(false),
+                fileSequence
+            );
+            reader.forEachEntry(entry -> payloads.put(
+                journal + ":" + entry.getSequence() + ":" + entry.getPosition(),
+                ByteBuffer.wrap(entry.getData()).getInt()
+            ));
+            reader.close();
+        }
+
+        for (int i = 0; i < locations.size(); i++) {
+            final RecordLocation location = locations.get(i);
+            final String key = location.getFileSequence() + ":" + location.getSequence() + ":" + location.getPosition();
+
+            assertThat(payloads.get(key)).isEqualTo(i);
+        }
+    }
+
+    @Test
+    public void it_splits_drained_batches_and_fails_only_records_larger_than_a_journal() throws Exception {
+        for (final JournalWriteMode writeMode : JournalWriteMode.values()) {
+            final JournalDBOptions journalDBOptions = new JournalDBOptions();
+            journalDBOptions.setDataDirectory(testFolder.newFolder());
+            journalDBOptions.setJournalMaxSize(32, DigitalUnit.KILOBYTE);
+            journalDBOptions.setJournalOptions(new JournalOptions().setWriteMode(writeMode));
+            final JournalDB journalDB = new JournalDB(journalDBOptions);
+
+            final AsyncJournalWriter writer = new AsyncJournalWriter(journalDB);
+            final List<CompletableFuture<RecordLocation>> futures = new ArrayList<>();
+
+            for (int i = 0; i < 2000; i++) {
+                futures.add(writer.write(1000 == i ? new byte[64 * 1024] : new byte[16]));
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                final CompletableFuture<RecordLocation> future = futures.get(i);
+
+                try {
+                    future.get(1, TimeUnit.MINUTES);
+
+                    assertThat(1000 == i && JournalWriteMode.MEMORY_MAPPED == writeMode).isFalse();
+                } catch (final ExecutionException e) {
+                    assertThat(i).isEqualTo(1000);
+                    assertThat(writeMode).isEqualTo(JournalWriteMode.MEMORY_MAPPED);
+                    assertThat(e.getCause()).isInstanceOf(IllegalArgumentException.class);
+                }
+            }
+
+            assertThat(writer.write(new byte[16]).get(1, TimeUnit.MINUTES)).isNotNull();
+            assertThat(journalDB.getSequence()).isGreaterThan(2L);
+
+            writer.close();
+            journalDB.close();
+        }
+    }
+
+    @Test
+    public void it_fails_writes_after_close() throws IOException {
+        final JournalDBOptions journalDBOptions = new JournalDBOptions();
+        journalDBOptions.setDataDirectory(testFolder.newFolder());
+        final JournalDB journalDB = new JournalDB(journalDBOptions);
+
+        final AsyncJournalWriter writer = new AsyncJournalWriter(journalDB);
+        writer.close();
+
+        assertThat(writer.write(new byte[8]).isCompletedExceptionally()).isTrue();
+
+        journalDB.close();
+    }
+}
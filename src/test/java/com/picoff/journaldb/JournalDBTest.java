@@ -6,7 +6,16 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.google.common.truth.Truth.assertThat;
 
@@ -42,4 +51,724 @@ public class JournalDBTest {
         journalDB.flush();
         journalDB.close();
     }
+
+    @Test
+    public void it_group_commits_concurrent_sync_writes() throws IOException, InterruptedException {
+        final JournalDBOptions journalDBOptions = new JournalDBOptions();
+        journalDBOptions.setDataDirectory(testFolder.newFolder());
+        journalDBOptions.setGroupCommit(true);
+        journalDBOptions.setGroupCommitWindow(1, TimeUnit.MILLISECONDS);
+        journalDBOptions.setGroupCommitMaxSize(64, DigitalUnit.KILOBYTE);
+        final JournalDB journalDB = new JournalDB(journalDBOptions);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(16);
+        final List<IOException> failures = new ArrayList<>();
+        final byte[] fk_payload = new byte[128];
+
+        for (int i = 0; i < 2000; i++) {
+            executor.execute(() -> {
+                try {
+                    journalDB.write(fk_payload, true);
+                } catch (final IOException e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        assertThat(failures).isEmpty();
+
+        final long sequence = journalDB.relocate();
+        journalDB.close();
+
+        final JournalReader reader = journalDB.createReader(readerOptions(), sequence);
+        final AtomicInteger entries = new AtomicInteger();
+        reader.forEachEntry(entry -> entries.incrementAndGet());
+        reader.close();
+
+        assertThat(entries.get()).isEqualTo(2000);
+    }
+
+    @Test
+    public void it_fails_group_committed_writes_that_were_not_written() throws IOException {
+        final JournalDBOptions journalDBOptions = new JournalDBOptions();
+        journalDBOptions.setDataDirectory(testFolder.newFolder());
+        journalDBOptions.setRelocateOnWriteFailure(true);
+        journalDBOptions.setGroupCommit(true);
+        journalDBOptions.setGroupCommitWindow(1, TimeUnit.MILLISECONDS);
+        final JournalDB journalDB = new JournalDB(journalDBOptions);
+
+        // Each write opens the journal file again, so writes to a deleted journal fail
+        assertThat(journalDB.getJournalFile(0).delete()).isTrue();
+
+        IOException failure = null;
+
+        try {
+            journalDB.write(new byte[16], true);
+        } catch (final IOException e) {
+            failure = e;
+        }
+
+        assertThat(failure).isNotNull();
+
+        journalDB.write(new byte[16], true);
+        journalDB.close();
+    }
+
+    @Test
+    public void it_group_commits_batches_larger_than_a_journal() throws IOException, InterruptedException {
+        final JournalDBOptions journalDBOptions = new JournalDBOptions();
+        journalDBOptions.setDataDirectory(testFolder.newFolder());
+        journalDBOptions.setJournalMaxSize(1, DigitalUnit.KILOBYTE);
+        journalDBOptions.setJournalOptions(new JournalOptions().setWriteMode(JournalWriteMode.MEMORY_MAPPED));
+        journalDBOptions.setGroupCommit(true);
+        journalDBOptions.setGroupCommitWindow(10, TimeUnit.MILLISECONDS);
+        final JournalDB journalDB = new JournalDB(journalDBOptions);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final List<IOException> failures = new ArrayList<>();
+        final AtomicInteger rejected = new AtomicInteger();
+
+        for (int i = 0; i < 8; i++) {
+            executor.execute(() -> {
+                for (int j = 0; j < 50; j++) {
+                    try {
+                        journalDB.write(new byte[100], true);
+                    } catch (final IOException e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    }
+                }
+
+                try {
+                    journalDB.write(new byte[2048], true);
+                } catch (final IllegalArgumentException e) {
+                    rejected.incrementAndGet();
+                } catch (final IOException e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        final long lastSequence = journalDB.getSequence();
+        journalDB.close();
+
+        assertThat(failures).isEmpty();
+        assertThat(rejected.get()).isEqualTo(8);
+
+        final AtomicInteger entries = new AtomicInteger();
+        for (long sequence = 0; sequence <= lastSequence; sequence++) {
+            final JournalReader reader = journalDB.createReader(readerOptions(), sequence);
+            reader.forEachEntry(entry -> entries.incrementAndGet());
+            reader.close();
+        }
+
+        assertThat(entries.get()).isEqualTo(400);
+    }
+
+    @Test
+    public void it_reads_entries_in_a_time_range() throws IOException, InterruptedException {
+        final JournalDBOptions journalDBOptions = new JournalDBOptions();
+        journalDBOptions.setDataDirectory(testFolder.newFolder());
+        final JournalDB journalDB = new JournalDB(journalDBOptions);
+
+        for (int i = 0; i < 3000; i++) {
+            journalDB.write(new byte[]{'a'});
+        }
+
+        Thread.sleep(20);
+        final long startTimestamp = System.currentTimeMillis();
+        Thread.sleep(5);
+
+        for (int i = 0; i < 10; i++) {
+            journalDB.write(new byte[]{'b'});
+        }
+
+        Thread.sleep(5);
+        final long endTimestamp = System.currentTimeMillis();
+        Thread.sleep(20);
+
+        for (int i = 0; i < 3000; i++) {
+            journalDB.write(new byte[]{'c'});
+        }
+
+        journalDB.relocate();
+        journalDB.write(new byte[]{'d'});
+        journalDB.relocate();
+
+        final List<JournalEntry> entries = new ArrayList<>();
+        journalDB.forEachEntryInTimeRange(startTimestamp, endTimestamp, entries::add);
+        journalDB.close();
+
+        assertThat(entries).hasSize(10);
+
+        for (final JournalEntry entry : entries) {
+            assertThat(entry.getData()[0]).isEqualTo((byte) 'b');
+        }
+    }
+
+    @Test
+    public void it_iterates_all_journals_with_a_resumable_cursor() throws IOException {
+        final JournalDBOptions journalDBOptions = new JournalDBOptions();
+        journalDBOptions.setDataDirectory(testFolder.newFolder());
+        final JournalDB journalDB = new JournalDB(journalDBOptions);
+
+        for (int i = 0; i < 180; i++) {
+            journalDB.write(new byte[]{(byte) i});
+
+            if (99 == i || 149 == i) {
+                journalDB.relocate();
+            }
+        }
+
+        final JournalCursor cursor = journalDB.openCursor();
+        JournalCursorPosition resumePosition = null;
+
+        for (int i = 0; i < 180; i++) {
+            final JournalEntry entry = cursor.next();
+
+            assertThat(entry).isNotNull();
+            assertThat(entry.getData()[0]).isEqualTo((byte) i);
+
+            if (119 == i) {
+                resumePosition = cursor.position();
+            }
+        }
+
+        assertThat(cursor.next()).isNull();
+        assertThat(cursor.position().getFileSequence()).isEqualTo(2L);
+
+        journalDB.write(new byte[]{(byte) 180});
+
+        assertThat(cursor.next().getData()[0]).isEqualTo((byte) 180);
+        cursor.close();
+
+        final JournalCursor resumed = journalDB.openCursor(resumePosition);
+        int remaining = 0;
+
+        while (null != resumed.next()) {
+            remaining++;
+        }
+
+        resumed.close();
+        journalDB.close();
+
+        assertThat(resumePosition.getFileSequence()).isEqualTo(1L);
+        assertThat(remaining).isEqualTo(61);
+    }
+
+    @Test
+    public void it_skips_unconfirmed_records_and_ends_finished_journals_at_an_unwritten_record() throws IOException {
+        final JournalDBOptions journalDBOptions = new JournalDBOptions();
+        journalDBOptions.setDataDirectory(testFolder.newFolder());
+        final JournalDB journalDB = new JournalDB(journalDBOptions);
+
+        for (int journal = 0; journal < 2; journal++) {
+            for (int i = 0; i < 3; i++) {
+                journalDB.write(new byte[]{(byte) (journal * 10 + i)});
+            }
+
+            journalDB.relocate();
+        }
+
+        final long secondRecord = Journal.FILE_HEADER_SIZE
+            + Journal.RECORD_HEADER_SIZE + 1 + Journal.RECORD_CHECKSUM_SIZE;
+
+        try (final RandomAccessFile file = new RandomAccessFile(journalDB.getJournalFile(0), "rw")) {
+            file.seek(secondRecord + 1);
+            file.write(Journal.B_FALSE); // Never confirmed
+        }
+
+        try (final RandomAccessFile file = new RandomAccessFile(journalDB.getJournalFile(1), "rw")) {
+            file.seek(secondRecord);
+            file.write(0); // Never written
+        }
+
+        final JournalCursor cursor = journalDB.openCursor();
+
+        assertThat(cursor.next().getData()[0]).isEqualTo((byte) 0);
+        assertThat(cursor.next().getData()[0]).isEqualTo((byte) 2);
+        assertThat(cursor.next().getData()[0]).isEqualTo((byte) 10);
+        assertThat(cursor.next()).isNull();
+        assertThat(cursor.position().getFileSequence()).isEqualTo(2L);
+
+        cursor.close();
+        journalDB.close();
+    }
+
+    @Test
+    public void it_tails_records_across_relocation() throws Exception {
+        final JournalDBOptions journalDBOptions = new JournalDBOptions();
+        journalDBOptions.setDataDirectory(testFolder.newFolder());
+        final JournalDB journalDB = new JournalDB(journalDBOptions);
+
+        journalDB.write(new byte[]{-1});
+
+        final JournalTailer tailer = journalDB.openTailer();
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final Future<List<Byte>> consumed = executor.submit(() -> {
+            final List<Byte> values = new ArrayList<>();
+
+            for (int i = 0; i < 200; i++) {
+                values.add(tailer.next().getData()[0]);
+            }
+
+            return values;
+        });
+
+        for (int i = 0; i < 200; i++) {
+            journalDB.write(new byte[]{(byte) i});
+
+            if (99 == i) {
+                journalDB.relocate();
+            }
+        }
+
+        final List<Byte> values = consumed.get(1, TimeUnit.MINUTES);
+        executor.shutdown();
+
+        assertThat(tailer.next(10, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(tailer.position().getFileSequence()).isEqualTo(1L);
+
+        tailer.close();
+        journalDB.close();
+
+        for (int i = 0; i < 200; i++) {
+            assertThat(values.get(i)).isEqualTo((byte) i);
+        }
+    }
+
+    @Test
+    public void it_resumes_named_consumers_from_committed_offsets() throws IOException {
+        final JournalDBOptions journalDBOptions = new JournalDBOptions();
+        journalDBOptions.setDataDirectory(testFolder.newFolder());
+        final JournalDB journalDB = new JournalDB(journalDBOptions);
+
+        for (int i = 0; i < 100; i++) {
+            journalDB.write(new byte[]{(byte) i});
+
+            if (49 == i) {
+                journalDB.relocate();
+            }
+        }
+
+        final JournalCursor first = journalDB.openCursor("first");
+        final JournalCursor second = journalDB.openCursor("second");
+
+        for (int i = 0; i < 70; i++) {
+            final JournalEntry entry = first.next();
+            final JournalCursorPosition position = first.position();
+            journalDB.commitConsumerOffset(
+                "first",
+                new ConsumerOffset(position.getFileSequence(), position.getOffset(), entry.getSequence())
+            );
+        }
+
+        final JournalEntry secondEntry = second.next();
+        final JournalCursorPosition secondPosition = second.position();
+        journalDB.commitConsumerOffset(
+            "second",
+            new ConsumerOffset(secondPosition.getFileSequence(), secondPosition.getOffset(), secondEntry.getSequence()),
+            true
+        );
+
+        first.close();
+        second.close();
+        journalDB.close();
+
+        final JournalDB reopened = new JournalDB(journalDBOptions);
+
+        assertThat(reopened.getConsumerOffset("first").getFileSequence()).isEqualTo(1L);
+        assertThat(reopened.getConsumerOffset("first").getRecordSequence()).isEqualTo(19L);
+        assertThat(reopened.getConsumerOffset("missing")).isNull();
+
+        final JournalCursor resumedFirst = reopened.openCursor("first");
+        final JournalCursor resumedSecond = reopened.openCursor("second");
+
+        assertThat(resumedFirst.next().getData()[0]).isEqualTo((byte) 70);
+        assertThat(resumedSecond.next().getData()[0]).isEqualTo((byte) 1);
+
+        resumedFirst.close();
+        resumedSecond.close();
+        reopened.close();
+    }
+
+    @Test
+    public void it_keeps_a_catalog_of_journals() throws IOException {
+        final File dataDirectory = testFolder.newFolder();
+        final JournalDBOptions journalDBOptions = new JournalDBOptions().setDataDirectory(dataDirectory);
+        final JournalDB journalDB = new JournalDB(journalDBOptions);
+
+        for (int i = 0; i < 30; i++) {
+            journalDB.write(new byte[]{(byte) i});
+
+            if (9 == i || 19 == i) {
+                journalDB.relocate();
+            }
+        }
+
+        final List<JournalCatalogEntry> catalog = journalDB.getCatalog();
+
+        assertThat(catalog).hasSize(3);
+        assertThat(catalog.get(0).isArchived()).isTrue();
+        assertThat(catalog.get(0).getRecordCount()).isEqualTo(10L);
+        assertThat(catalog.get(0).getLastSequence()).isEqualTo(9L);
+        assertThat(catalog.get(0).getSize()).isEqualTo(journalDB.getJournalFile(0).length());
+        assertThat(catalog.get(0).getMaxTimestamp()).isAtLeast(catalog.get(0).getMinTimestamp());
+        assertThat(catalog.get(2).isArchived()).isFalse();
+        assertThat(catalog.get(2).getRecordCount()).isEqualTo(10L);
+
+        journalDB.close();
+
+        final JournalDB reopened = new JournalDB(journalDBOptions);
+
+        assertThat(reopened.getCatalogEntry(1).getArchivedAt()).isEqualTo(catalog.get(1).getArchivedAt());
+        assertThat(reopened.getCatalogEntry(2).getRecordCount()).isEqualTo(10L);
+        assertThat(reopened.getCatalogEntry(3)).isNull();
+
+        reopened.close();
+
+        // Databases created before the catalog existed get it built from the journal headers
+        assertThat(new File(dataDirectory, "journal_catalog").delete()).isTrue();
+
+        final JournalDB rebuilt = new JournalDB(journalDBOptions);
+
+        assertThat(rebuilt.getCatalog()).hasSize(3);
+        assertThat(rebuilt.getCatalogEntry(0).getRecordCount()).isEqualTo(10L);
+        assertThat(rebuilt.getCatalogEntry(1).getCreatedAt()).isEqualTo(catalog.get(1).getCreatedAt());
+
+        rebuilt.close();
+    }
+
+    @Test
+    public void it_deletes_and_compacts_processed_journals() throws IOException {
+        final JournalDBOptions journalDBOptions = new JournalDBOptions();
+        journalDBOptions.setDataDirectory(testFolder.newFolder());
+        journalDBOptions.setRetentionOptions(new RetentionOptions()
+            .setInterval(1, TimeUnit.HOURS)
+            .setDeleteProcessed(true)
+            .setCompactionThreshold(0.5));
+        final JournalDB journalDB = new JournalDB(journalDBOptions);
+
+        for (int journal = 0; journal < 3; journal++) {
+            for (int i = 0; i < 10; i++) {
+                journalDB.write(new byte[]{(byte) (journal * 10 + i)});
+            }
+
+            journalDB.relocate();
+        }
+
+        markProcessed(journalDB, 0, 10);
+        markProcessed(journalDB, 1, 8);
+
+        final long sizeBefore = journalDB.getJournalFile(1).length();
+
+        journalDB.applyRetention();
+
+        assertThat(journalDB.getJournalFile(0).exists()).isFalse();
+        assertThat(journalDB.getJournalFile(1).length()).isLessThan(sizeBefore);
+
+        final List<JournalEntry> compacted = new ArrayList<>();
+        final JournalReader reader = journalDB.createReader(readerOptions(), 1);
+        reader.forEachEntry(compacted::add);
+        reader.close();
+
+        assertThat(compacted).hasSize(2);
+        assertThat(compacted.get(0).getData()[0]).isEqualTo((byte) 18);
+        assertThat(compacted.get(1).getData()[0]).isEqualTo((byte) 19);
+
+        try (final RandomAccessFile file = new RandomAccessFile(journalDB.getJournalFile(1), "r")) {
+            file.seek(27);
+            assertThat(file.readLong()).isEqualTo(file.length()); // End position
+            file.seek(53);
+            assertThat(file.readLong()).isEqualTo(file.length()); // Safe write position
+            assertThat(file.readLong()).isEqualTo(10L); // Safe sequence counter
+        }
+
+        final JournalCursor cursor = journalDB.openCursor();
+        assertThat(cursor.next().getData()[0]).isEqualTo((byte) 18);
+        cursor.close();
+
+        journalDB.close();
+    }
+
+    @Test
+    public void it_keeps_journals_a_committed_consumer_has_not_passed() throws IOException {
+        final JournalDBOptions journalDBOptions = new JournalDBOptions();
+        journalDBOptions.setDataDirectory(testFolder.newFolder());
+        journalDBOptions.setRetentionOptions(new RetentionOptions()
+            .setInterval(1, TimeUnit.HOURS)
+            .setDeleteProcessed(true)
+            .setCompactionThreshold(0.5));
+        final JournalDB journalDB = new JournalDB(journalDBOptions);
+
+        for (int journal = 0; journal < 3; journal++) {
+            for (int i = 0; i < 10; i++) {
+                journalDB.write(new byte[]{(byte) (journal * 10 + i)});
+            }
+
+            journalDB.relocate();
+        }
+
+        final JournalCursor cursor = journalDB.openCursor();
+        JournalEntry entry = null;
+
+        for (int i = 0; i < 13; i++) {
+            entry = cursor.next();
+        }
+
+        final JournalCursorPosition position = cursor.position();
+        journalDB.commitConsumerOffset(
+            "replay",
+            new ConsumerOffset(position.getFileSequence(), position.getOffset(), entry.getSequence())
+        );
+        cursor.close();
+
+        markProcessed(journalDB, 0, 10);
+        markProcessed(journalDB, 1, 8);
+        markProcessed(journalDB, 2, 10);
+
+        final long sizeBefore = journalDB.getJournalFile(1).length();
+
+        journalDB.applyRetention();
+
+        assertThat(journalDB.getJournalFile(0).exists()).isFalse();
+        assertThat(journalDB.getJournalFile(1).length()).isEqualTo(sizeBefore);
+        assertThat(journalDB.getJournalFile(2).exists()).isTrue();
+
+        final JournalCursor resumed = journalDB.openCursor("replay");
+        assertThat(resumed.next().getData()[0]).isEqualTo((byte) 13);
+        resumed.close();
+
+        journalDB.close();
+    }
+
+    private static void markProcessed(
+        final JournalDB journalDB,
+        final long fileSequence,
+        final int count
+    ) throws IOException {
+        final JournalReader reader = journalDB.createReader(readerOptions(), fileSequence);
+        final List<JournalEntry> entries = new ArrayList<>();
+        reader.forEachEntry(entry -> {
+            if (entries.size() < count) {
+                entries.add(entry);
+            }
+        });
+        reader.markProcessed(entries, true);
+        reader.close();
+    }
+
+    @Test
+    public void it_relocates_memory_mapped_journals_at_segment_end() throws IOException {
+        final JournalDBOptions journalDBOptions = new JournalDBOptions();
+        journalDBOptions.setDataDirectory(testFolder.newFolder());
+        journalDBOptions.setJournalMaxSize(64, DigitalUnit.KILOBYTE);
+        journalDBOptions.setJournalOptions(new JournalOptions().setWriteMode(JournalWriteMode.MEMORY_MAPPED));
+        final JournalDB journalDB = new JournalDB(journalDBOptions);
+
+        final byte[] fk_payload = new byte[1000];
+        for (int i = 0; i < 1000; i++) {
+            journalDB.write(fk_payload);
+        }
+
+        final long lastSequence = journalDB.getSequence();
+        journalDB.close();
+
+        final int recordsPerJournal = (64 * 1024 - 100) / 1056;
+
+        assertThat(lastSequence).isEqualTo(1000 / recordsPerJournal);
+
+        for (long sequence = 0; sequence < lastSequence; sequence++) {
+            final JournalReader reader = journalDB.createReader(readerOptions(), sequence);
+            final AtomicInteger entries = new AtomicInteger();
+            reader.forEachEntry(entry -> entries.incrementAndGet());
+            reader.close();
+
+            assertThat(entries.get()).isEqualTo(recordsPerJournal);
+        }
+    }
+
+    @Test
+    public void it_swaps_in_a_standby_journal_at_the_size_limit() throws IOException, InterruptedException {
+        final JournalDBOptions journalDBOptions = new JournalDBOptions();
+        journalDBOptions.setDataDirectory(testFolder.newFolder());
+        journalDBOptions.setJournalMaxSize(8, DigitalUnit.KILOBYTE);
+        final JournalDB journalDB = new JournalDB(journalDBOptions);
+
+        final File standby = journalDB.getJournalFile(1);
+        for (int i = 0; i < 100 && !standby.isFile(); i++) {
+            Thread.sleep(10);
+        }
+
+        assertThat(standby.isFile()).isTrue();
+        assertThat(journalDB.getSequence()).isEqualTo(0);
+
+        final byte[] fk_payload = new byte[1000];
+        for (int i = 0; i < 100; i++) {
+            journalDB.write(fk_payload);
+        }
+
+        final long lastSequence = journalDB.getSequence();
+        journalDB.close();
+
+        final int recordsPerJournal = (8 * 1024 - 100) / 1056;
+
+        assertThat(lastSequence).isEqualTo(100 / recordsPerJournal);
+        assertThat(journalDB.getJournalFile(lastSequence + 1).exists()).isFalse();
+
+        for (long sequence = 0; sequence < lastSequence; sequence++) {
+            assertThat(journalDB.getJournalFile(sequence).length()).isAtMost(8 * 1024L);
+
+            final JournalReader reader = journalDB.createReader(readerOptions(), sequence);
+            final AtomicInteger entries = new AtomicInteger();
+            reader.forEachEntry(entry -> entries.incrementAndGet());
+            reader.close();
+
+            assertThat(entries.get()).isEqualTo(recordsPerJournal);
+        }
+    }
+
+    @Test
+    public void it_rotates_journals_by_entry_count_and_time() throws IOException, InterruptedException {
+        final JournalDBOptions journalDBOptions = new JournalDBOptions();
+        journalDBOptions.setDataDirectory(testFolder.newFolder());
+        journalDBOptions.setRotationPolicy(new RotationPolicy()
+            .setMaxRecords(10)
+            .setInterval(200, TimeUnit.MILLISECONDS));
+        final JournalDB journalDB = new JournalDB(journalDBOptions);
+
+        final byte[] fk_payload = new byte[100];
+        for (int i = 0; i < 25; i++) {
+            journalDB.write(fk_payload);
+        }
+
+        final long countedSequence = journalDB.getSequence();
+
+        for (int i = 0; i < 100 && journalDB.getSequence() == countedSequence; i++) {
+            Thread.sleep(10);
+        }
+
+        final long lastSequence = journalDB.getSequence();
+        journalDB.close();
+
+        assertThat(countedSequence).isAtLeast(2L);
+        assertThat(lastSequence).isEqualTo(countedSequence + 1);
+
+        long entries = 0;
+        for (long sequence = 0; sequence < lastSequence; sequence++) {
+            final JournalCatalogEntry entry = journalDB.getCatalogEntry(sequence);
+
+            assertThat(entry.isArchived()).isTrue();
+            assertThat(entry.getRecordCount()).isAtMost(10L);
+            assertThat(entry.getMaxTimestamp() / 200).isEqualTo(entry.getMinTimestamp() / 200);
+
+            entries += entry.getRecordCount();
+        }
+
+        assertThat(entries).isEqualTo(25L);
+    }
+
+    @Test
+    public void it_relocates_under_concurrent_writes_without_failing_any() throws IOException, InterruptedException {
+        for (final JournalWriteMode writeMode : JournalWriteMode.values()) {
+            final JournalDBOptions journalDBOptions = new JournalDBOptions();
+            journalDBOptions.setDataDirectory(testFolder.newFolder());
+            journalDBOptions.setJournalMaxSize(64, DigitalUnit.KILOBYTE);
+            journalDBOptions.setJournalOptions(new JournalOptions().setWriteMode(writeMode));
+            final JournalDB journalDB = new JournalDB(journalDBOptions);
+
+            final ExecutorService executor = Executors.newFixedThreadPool(8);
+            final List<IOException> failures = new ArrayList<>();
+            final byte[] fk_payload = new byte[200];
+
+            for (int i = 0; i < 100000; i++) {
+                executor.execute(() -> {
+                    try {
+                        journalDB.write(fk_payload);
+                    } catch (final IOException e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    }
+                });
+            }
+
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+
+            final long lastSequence = journalDB.getSequence();
+            journalDB.close();
+
+            assertThat(failures).isEmpty();
+            assertThat(lastSequence).isGreaterThan(10L);
+
+            final AtomicInteger entries = new AtomicInteger();
+            for (long sequence = 0; sequence <= lastSequence; sequence++) {
+                final JournalReader reader = journalDB.createReader(readerOptions(), sequence);
+                reader.forEachEntry(entry -> entries.incrementAndGet());
+                reader.close();
+            }
+
+            assertThat(entries.get()).isEqualTo(100000);
+        }
+    }
+
+    @Test
+    public void it_splits_batches_and_keeps_writing_after_records_larger_than_a_journal() throws IOException {
+        for (final JournalWriteMode writeMode : JournalWriteMode.values()) {
+            final JournalDBOptions journalDBOptions = new JournalDBOptions();
+            journalDBOptions.setDataDirectory(testFolder.newFolder());
+            journalDBOptions.setJournalMaxSize(1, DigitalUnit.KILOBYTE);
+            journalDBOptions.setJournalOptions(new JournalOptions().setWriteMode(writeMode));
+            final JournalDB journalDB = new JournalDB(journalDBOptions);
+
+            final List<byte[]> batch = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                batch.add(new byte[100]);
+            }
+
+            journalDB.writeBatch(batch);
+
+            try {
+                journalDB.write(new byte[2048]);
+
+                assertThat(writeMode).isNotEqualTo(JournalWriteMode.MEMORY_MAPPED);
+            } catch (final IllegalArgumentException e) {
+                assertThat(writeMode).isEqualTo(JournalWriteMode.MEMORY_MAPPED);
+            }
+
+            journalDB.write(new byte[100]);
+
+            final long lastSequence = journalDB.getSequence();
+            journalDB.close();
+
+            assertThat(lastSequence).isAtLeast(3L);
+
+            final AtomicInteger entries = new AtomicInteger();
+            for (long sequence = 0; sequence <= lastSequence; sequence++) {
+                final JournalReader reader = journalDB.createReader(readerOptions(), sequence);
+                reader.forEachEntry(entry -> entries.incrementAndGet());
+                reader.close();
+            }
+
+            assertThat(entries.get()).isEqualTo(JournalWriteMode.MEMORY_MAPPED == writeMode ? 21 : 22);
+        }
+    }
+
+    private static JournalReaderOptions readerOptions() {
+        return new JournalReaderOptions()
+            .setFailOnNotArchived(false)
+            .setFailOnNotClosedGracefully(false);
+    }
 }
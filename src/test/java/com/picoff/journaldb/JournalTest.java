@@ -1,9 +1,12 @@
 package com.picoff.journaldb;
 
 import com.google.common.collect.Range;
+import com.picoff.commons.unit.DigitalUnit;
 import com.picoff.journaldb.exception.ArchivedJournalWriteException;
+import com.picoff.journaldb.exception.JournalFullException;
 import com.picoff.journaldb.exception.JournalMagicByteException;
 import com.picoff.journaldb.exception.NotClosedGracefullyException;
+import com.picoff.journaldb.exception.RecordChecksumException;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -11,15 +14,24 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
 
 public class JournalTest extends BaseTest {
     private static final byte[] PAYLOAD = "payload".getBytes();
@@ -78,6 +90,734 @@ public class JournalTest extends BaseTest {
         return journalFile;
     }
 
+    @Test
+    public void it_writes_journal_with_persistent_channel() throws IOException {
+        final File journalFile = testFolder.newFile();
+        final JournalOptions options = new JournalOptions().setWriteMode(JournalWriteMode.PERSISTENT_CHANNEL);
+        final Journal journal = new Journal(options, journalFile);
+
+        journal.write(PAYLOAD);
+        journal.write(PAYLOAD, true);
+        journal.flush();
+
+        assertThat(journal.size()).isEqualTo(226);
+
+        journal.close();
+
+        final JournalReader journalReader = new JournalReader(journalFile);
+
+        final List<JournalEntry> entries = new ArrayList<>();
+        journalReader.forEachEntry(entries::add);
+        journalReader.close();
+
+        assertThat(entries).hasSize(2);
+        assertThat(entries.get(0).isIntegrityPass()).isTrue();
+        assertThat(entries.get(0).getChecksum()).isEqualTo(1110206997);
+        assertThat(entries.get(1).getSequence()).isEqualTo(1);
+        assertThat(entries.get(1).getData()).isEqualTo(PAYLOAD);
+    }
+
+    @Test
+    public void it_writes_batch_with_consecutive_sequences() throws IOException {
+        final File journalFile = testFolder.newFile();
+        final Journal journal = new Journal(
+            new JournalOptions().setWriteMode(JournalWriteMode.PERSISTENT_CHANNEL),
+            journalFile
+        );
+
+        final ByteBuffer direct = ByteBuffer.allocateDirect(PAYLOAD.length);
+        direct.put(PAYLOAD);
+        direct.flip();
+
+        journal.write(PAYLOAD);
+        journal.writeBatch(new ByteBuffer[]{ByteBuffer.wrap(PAYLOAD), direct, ByteBuffer.allocate(0)}, true);
+
+        assertThat(direct.remaining()).isEqualTo(PAYLOAD.length);
+        assertThat(journal.sequence()).isEqualTo(4);
+        assertThat(journal.size()).isEqualTo(100 + 3 * 63 + 56);
+
+        journal.close();
+
+        final JournalReader journalReader = new JournalReader(journalFile);
+
+        final List<JournalEntry> entries = new ArrayList<>();
+        journalReader.forEachEntry(entries::add);
+        journalReader.close();
+
+        assertThat(entries).hasSize(4);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(entries.get(i).getSequence()).isEqualTo(i);
+            assertThat(entries.get(i).getData()).isEqualTo(PAYLOAD);
+        }
+
+        assertThat(entries.get(3).getSequence()).isEqualTo(3);
+        assertThat(entries.get(3).getDataSize()).isEqualTo(0);
+    }
+
+    @Test
+    public void it_writes_memory_mapped_journal_up_to_its_capacity() throws IOException {
+        final File journalFile = testFolder.newFile();
+        final JournalOptions options = new JournalOptions()
+            .setWriteMode(JournalWriteMode.MEMORY_MAPPED)
+            .setMaxSize(1, DigitalUnit.KILOBYTE)
+            .setMappedWindowSize(256, DigitalUnit.BYTE);
+
+        final Journal journal = new Journal(options, journalFile);
+
+        int written = 0;
+
+        try {
+            while (true) {
+                journal.write(PAYLOAD, 0 == written % 2);
+                written++;
+            }
+        } catch (final JournalFullException e) {
+            assertThat(written).isEqualTo((1024 - 100) / 63);
+        }
+
+        assertThat(journal.size()).isEqualTo(100 + written * 63);
+
+        journal.close();
+
+        assertThat(journalFile.length()).isEqualTo(100 + written * 63);
+
+        final JournalReader journalReader = new JournalReader(journalFile);
+
+        final List<JournalEntry> entries = new ArrayList<>();
+        journalReader.forEachEntry(entries::add);
+        journalReader.close();
+
+        assertThat(entries).hasSize(written);
+
+        for (int i = 0; i < written; i++) {
+            assertThat(entries.get(i).getSequence()).isEqualTo(i);
+            assertThat(entries.get(i).getData()).isEqualTo(PAYLOAD);
+        }
+    }
+
+    @Test
+    public void it_writes_byte_buffers_and_encoded_payloads_in_every_write_mode() throws IOException {
+        for (final JournalWriteMode writeMode : JournalWriteMode.values()) {
+            final File journalFile = testFolder.newFile();
+            final JournalOptions options = new JournalOptions()
+                .setWriteMode(writeMode)
+                .setMaxSize(1, DigitalUnit.MEGABYTE);
+
+            final Journal journal = new Journal(options, journalFile);
+
+            final ByteBuffer direct = ByteBuffer.allocateDirect(PAYLOAD.length);
+            direct.put(PAYLOAD);
+            direct.flip();
+
+            journal.write(direct);
+            journal.write(PAYLOAD.length, buffer -> buffer.put(PAYLOAD), true);
+
+            assertThat(direct.remaining()).isEqualTo(PAYLOAD.length);
+
+            journal.close();
+
+            final JournalReader journalReader = new JournalReader(journalFile);
+
+            final List<JournalEntry> entries = new ArrayList<>();
+            journalReader.forEachEntry(entries::add);
+            journalReader.close();
+
+            assertThat(entries).hasSize(2);
+
+            for (final JournalEntry entry : entries) {
+                assertThat(entry.getChecksum()).isEqualTo(1110206997);
+                assertThat(entry.getData()).isEqualTo(PAYLOAD);
+            }
+        }
+    }
+
+    @Test
+    public void it_fails_an_encoded_write_without_leaving_a_hole() throws IOException {
+        for (final JournalWriteMode writeMode : JournalWriteMode.values()) {
+            final File journalFile = testFolder.newFile();
+            final JournalOptions options = new JournalOptions()
+                .setWriteMode(writeMode)
+                .setMaxSize(1, DigitalUnit.MEGABYTE);
+
+            final Journal journal = new Journal(options, journalFile);
+
+            journal.write(PAYLOAD);
+
+            try {
+                journal.write(PAYLOAD.length, buffer -> {
+                    buffer.put(PAYLOAD, 0, 2);
+                    throw new IllegalStateException("Encoder failure");
+                });
+
+                fail();
+            } catch (final IllegalStateException e) {
+                // The failed write leaves a void record behind, which readers skip
+            }
+
+            journal.write(PAYLOAD.length, buffer -> buffer.put(PAYLOAD));
+            journal.write(PAYLOAD.length, buffer -> buffer.put(PAYLOAD[0]));
+            journal.close();
+
+            final JournalReader journalReader = new JournalReader(journalFile);
+
+            final List<JournalEntry> entries = new ArrayList<>();
+            journalReader.forEachEntry(entries::add);
+            journalReader.close();
+
+            final byte[] shortPayload = new byte[PAYLOAD.length];
+            shortPayload[0] = PAYLOAD[0];
+
+            assertThat(entries).hasSize(3);
+            assertThat(entries.get(1).getSequence()).isEqualTo(2L);
+            assertThat(entries.get(1).getData()).isEqualTo(PAYLOAD);
+            assertThat(entries.get(2).getData()).isEqualTo(shortPayload);
+        }
+    }
+
+    @Test
+    public void it_continues_sequence_after_reopening_journal() throws IOException {
+        final File journalFile = testFolder.newFile();
+
+        final Journal journal = new Journal(journalFile);
+        journal.write(PAYLOAD);
+        journal.write(PAYLOAD);
+        journal.close();
+
+        final Journal reopened = new Journal(journalFile);
+
+        assertThat(reopened.sequence()).isEqualTo(2);
+        assertThat(reopened.size()).isEqualTo(226);
+
+        reopened.write(PAYLOAD);
+        reopened.close();
+
+        final JournalReader journalReader = new JournalReader(journalFile);
+
+        final List<JournalEntry> entries = new ArrayList<>();
+        journalReader.forEachEntry(entries::add);
+        journalReader.close();
+
+        assertThat(entries).hasSize(3);
+        assertThat(entries.get(2).getSequence()).isEqualTo(2);
+        assertThat(journalReader.getMetadata().getSequence()).isEqualTo(3);
+    }
+
+    @Test
+    public void it_reads_records_larger_than_the_read_buffer() throws IOException {
+        final File journalFile = testFolder.newFile();
+        final Journal journal = new Journal(journalFile);
+
+        for (int i = 0; i < 100; i++) {
+            final byte[] payload = new byte[0 == i % 3 ? 1000 : 7];
+            payload[0] = (byte) i;
+            journal.write(payload);
+        }
+
+        journal.close();
+
+        final JournalReader journalReader = new JournalReader(
+            new JournalReaderOptions().setReadBufferSize(64, DigitalUnit.BYTE),
+            journalFile
+        );
+
+        final List<JournalEntry> entries = new ArrayList<>();
+        journalReader.forEachEntry(
+            new EntryReadOptions().setReadFilter(meta -> 0 != meta.getSequence() % 5),
+            entries::add
+        );
+        journalReader.close();
+
+        assertThat(entries).hasSize(80);
+
+        for (final JournalEntry entry : entries) {
+            assertThat(entry.getSequence() % 5).isNotEqualTo(0);
+            assertThat(entry.getDataSize()).isEqualTo(0 == entry.getSequence() % 3 ? 1000 : 7);
+            assertThat(entry.getData()[0]).isEqualTo((byte) entry.getSequence());
+        }
+    }
+
+    @Test
+    public void it_iterates_entry_views_across_map_windows() throws IOException {
+        final File journalFile = testFolder.newFile();
+        final Journal journal = new Journal(journalFile);
+
+        for (int i = 0; i < 50; i++) {
+            final byte[] data = new byte[0 == i % 4 ? 300 : 10];
+            data[0] = (byte) i;
+            journal.write(data);
+        }
+
+        journal.close();
+
+        final JournalReader journalReader = new JournalReader(
+            new JournalReaderOptions().setMapWindowSize(512, DigitalUnit.BYTE),
+            journalFile
+        );
+
+        final List<Long> sequences = new ArrayList<>();
+        journalReader.forEachEntryView(view -> {
+            final ByteBuffer payload = view.getPayload();
+
+            assertThat(payload.isReadOnly()).isTrue();
+            assertThat(payload.remaining()).isEqualTo(0 == view.getSequence() % 4 ? 300 : 10);
+            assertThat(payload.get(payload.position())).isEqualTo((byte) view.getSequence());
+            assertThat(view.getData()).hasLength(view.getDataSize());
+            assertThat(view.isIntegrityPass()).isTrue();
+
+            if (7 == view.getSequence()) {
+                try {
+                    view.writeProcessedState(true, false);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+
+                assertThat(view.getProcessed()).isTrue();
+            }
+
+            sequences.add(view.getSequence());
+        });
+
+        final List<JournalEntry> entries = new ArrayList<>();
+        journalReader.forEachEntry(new EntryReadOptions().setReadFilter(FilterMetadata::isProcessed), entries::add);
+        journalReader.close();
+
+        assertThat(sequences).hasSize(50);
+        assertThat(sequences.get(49)).isEqualTo(49L);
+        assertThat(entries).hasSize(1);
+        assertThat(entries.get(0).getSequence()).isEqualTo(7L);
+    }
+
+    @Test
+    public void it_seeks_to_a_sequence_through_the_sequence_index() throws IOException {
+        final File journalFile = new File(testFolder.getRoot(), "journal_0.jdf");
+        final Journal journal = new Journal(new JournalOptions().setIndexInterval(16), journalFile);
+
+        for (int i = 0; i < 100; i++) {
+            journal.write(new byte[]{(byte) i});
+        }
+
+        journal.archiveAndClose();
+
+        assertThat(new File(testFolder.getRoot(), "journal_0.idx").isFile()).isTrue();
+
+        final JournalReader journalReader = new JournalReader(
+            new JournalReaderOptions().setFailOnNotArchived(false).setFailOnNotClosedGracefully(false),
+            journalFile
+        );
+
+        final List<JournalEntry> entries = new ArrayList<>();
+        journalReader.forEachEntry(new EntryReadOptions().setStartSequence(37), entries::add);
+
+        final List<Long> viewSequences = new ArrayList<>();
+        journalReader.forEachEntryView(
+            new EntryReadOptions().setStartSequence(95),
+            view -> viewSequences.add(view.getSequence())
+        );
+        journalReader.close();
+
+        assertThat(entries).hasSize(63);
+        assertThat(entries.get(0).getSequence()).isEqualTo(37L);
+        assertThat(entries.get(0).getData()[0]).isEqualTo((byte) 37);
+        assertThat(viewSequences).containsExactly(95L, 96L, 97L, 98L, 99L).inOrder();
+    }
+
+    @Test
+    public void it_scans_a_journal_in_parallel() throws IOException {
+        final File journalFile = testFolder.newFile();
+        final Journal journal = new Journal(new JournalOptions().setIndexInterval(64), journalFile);
+
+        for (int i = 0; i < 10000; i++) {
+            journal.write(new byte[]{(byte) i, (byte) (i >> 8)});
+        }
+
+        journal.archiveAndClose();
+
+        final JournalReader journalReader = new JournalReader(
+            new JournalReaderOptions().setFailOnNotArchived(false).setFailOnNotClosedGracefully(false),
+            journalFile
+        );
+
+        assertThat(journalReader.spliterator().trySplit()).isNotNull();
+
+        final Set<Long> sequences = ConcurrentHashMap.newKeySet();
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        journalReader.forEachEntryParallel(pool, new EntryReadOptions(), entry -> {
+            assertThat(entry.getData()[0]).isEqualTo((byte) entry.getSequence());
+            sequences.add(entry.getSequence());
+        });
+        pool.shutdown();
+
+        final long sum = journalReader
+            .stream(new EntryReadOptions().setStartSequence(5000), true)
+            .mapToLong(JournalEntry::getSequence)
+            .sum();
+        journalReader.close();
+
+        assertThat(sequences).hasSize(10000);
+        assertThat(sum).isEqualTo(LongStream.range(5000, 10000).sum());
+    }
+
+    @Test
+    public void it_keeps_processed_state_in_a_bitmap() throws IOException {
+        final File journalFile = testFolder.newFile();
+        final Journal journal = new Journal(journalFile);
+
+        for (int i = 0; i < 10000; i++) {
+            journal.write(new byte[]{(byte) i});
+        }
+
+        journal.archiveAndClose();
+
+        final JournalReaderOptions readerOptions = new JournalReaderOptions()
+            .setFailOnNotArchived(false)
+            .setFailOnNotClosedGracefully(false)
+            .setProcessedStateStore(ProcessedStateStore.BITMAP_WITH_TIMESTAMPS);
+
+        final JournalReader journalReader = new JournalReader(readerOptions, journalFile);
+        journalReader.forEachEntry(entry -> {
+            if (0 == entry.getSequence() % 3) {
+                try {
+                    entry.writeProcessedState(true, false);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+        journalReader.close();
+
+        final JournalReader bitmapReader = new JournalReader(readerOptions, journalFile);
+        final List<JournalEntry> processed = new ArrayList<>();
+        bitmapReader.forEachEntry(new EntryReadOptions().setReadFilter(FilterMetadata::isProcessed), processed::add);
+        bitmapReader.close();
+
+        final JournalReader headerReader = new JournalReader(
+            readerOptions.setProcessedStateStore(ProcessedStateStore.RECORD_HEADER),
+            journalFile
+        );
+        final AtomicInteger headerProcessed = new AtomicInteger();
+        headerReader.forEachEntry(
+            new EntryReadOptions().setReadFilter(FilterMetadata::isProcessed),
+            entry -> headerProcessed.incrementAndGet()
+        );
+        headerReader.close();
+
+        assertThat(processed).hasSize(3334);
+        assertThat(processed.get(1).getSequence()).isEqualTo(3L);
+        assertThat(processed.get(1).getProcessedTimestamp()).isGreaterThan(0L);
+        assertThat(headerProcessed.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void it_keeps_processed_state_of_compressed_block_records_apart() throws IOException {
+        final File journalFile = testFolder.newFile();
+        final Journal journal = new Journal(new JournalOptions().setCompression(JournalCompression.DEFLATE), journalFile);
+        journal.writeBatch(Collections.nCopies(10, PAYLOAD));
+        journal.archiveAndClose();
+
+        final JournalReaderOptions readerOptions = new JournalReaderOptions()
+            .setFailOnNotArchived(false)
+            .setFailOnNotClosedGracefully(false);
+
+        final JournalReader headerReader = new JournalReader(readerOptions, journalFile);
+        final List<JournalEntry> headerEntries = new ArrayList<>();
+        headerReader.forEachEntry(headerEntries::add);
+
+        try {
+            headerEntries.get(3).writeProcessedState(true, false);
+            fail();
+        } catch (final IllegalStateException e) {
+            assertThat(headerEntries.get(3).getProcessed()).isFalse();
+        }
+
+        headerReader.close();
+
+        readerOptions.setProcessedStateStore(ProcessedStateStore.BITMAP);
+
+        final JournalReader bitmapReader = new JournalReader(readerOptions, journalFile);
+        final List<JournalEntry> bitmapEntries = new ArrayList<>();
+        bitmapReader.forEachEntry(bitmapEntries::add);
+        bitmapEntries.get(3).writeProcessedState(true, true);
+        bitmapReader.close();
+
+        final JournalReader verifyReader = new JournalReader(readerOptions, journalFile);
+        final List<Long> processed = new ArrayList<>();
+        verifyReader.forEachEntry(
+            new EntryReadOptions().setReadFilter(FilterMetadata::isProcessed),
+            entry -> processed.add(entry.getSequence())
+        );
+        verifyReader.close();
+
+        assertThat(processed).containsExactly(3L);
+    }
+
+    @Test
+    public void it_marks_entries_processed_in_bulk() throws IOException {
+        final File journalFile = testFolder.newFile();
+        final Journal journal = new Journal(journalFile);
+
+        for (int i = 0; i < 1000; i++) {
+            journal.write(new byte[]{(byte) i});
+        }
+
+        journal.archiveAndClose();
+
+        final JournalReaderOptions readerOptions = new JournalReaderOptions()
+            .setFailOnNotArchived(false)
+            .setFailOnNotClosedGracefully(false);
+
+        final JournalReader journalReader = new JournalReader(readerOptions, journalFile);
+        final List<JournalEntry> acknowledged = new ArrayList<>();
+        journalReader.forEachEntry(entry -> {
+            if (0 == entry.getSequence() % 2) {
+                acknowledged.add(entry);
+            }
+        });
+
+        Collections.reverse(acknowledged);
+        journalReader.markProcessed(acknowledged, true);
+        journalReader.close();
+
+        assertThat(acknowledged.get(0).getProcessed()).isTrue();
+
+        final JournalReader verifyReader = new JournalReader(readerOptions, journalFile);
+        final List<JournalEntry> processed = new ArrayList<>();
+        verifyReader.forEachEntry(new EntryReadOptions().setReadFilter(FilterMetadata::isProcessed), processed::add);
+        verifyReader.close();
+
+        assertThat(processed).hasSize(500);
+
+        for (final JournalEntry entry : processed) {
+            assertThat(entry.getSequence() % 2).isEqualTo(0);
+            assertThat(entry.getProcessedTimestamp()).isGreaterThan(0L);
+        }
+    }
+
+    @Test
+    public void it_marks_single_entries_of_compressed_blocks_processed_in_bulk() throws IOException {
+        final File journalFile = testFolder.newFile();
+        final Journal journal = new Journal(new JournalOptions().setCompression(JournalCompression.DEFLATE), journalFile);
+        journal.writeBatch(Collections.nCopies(10, PAYLOAD));
+        journal.writeBatch(Collections.nCopies(10, PAYLOAD));
+        journal.archiveAndClose();
+
+        final JournalReaderOptions readerOptions = new JournalReaderOptions()
+            .setFailOnNotArchived(false)
+            .setFailOnNotClosedGracefully(false);
+
+        final JournalReader headerReader = new JournalReader(readerOptions, journalFile);
+        final List<JournalEntry> headerEntries = new ArrayList<>();
+        headerReader.forEachEntry(headerEntries::add);
+
+        try {
+            headerReader.markProcessed(Collections.singletonList(headerEntries.get(4)), true);
+            fail();
+        } catch (final IllegalStateException e) {
+            assertThat(headerEntries.get(4).getProcessed()).isFalse();
+        }
+
+        headerReader.close();
+
+        readerOptions.setProcessedStateStore(ProcessedStateStore.BITMAP);
+
+        final JournalReader bitmapReader = new JournalReader(readerOptions, journalFile);
+        final List<JournalEntry> acknowledged = new ArrayList<>();
+        bitmapReader.forEachEntry(entry -> {
+            if (4 == entry.getSequence() || 15 == entry.getSequence()) {
+                acknowledged.add(entry);
+            }
+        });
+        bitmapReader.markProcessed(acknowledged, true);
+        bitmapReader.close();
+
+        for (final ProcessedStateStore store : ProcessedStateStore.values()) {
+            final JournalReader verifyReader = new JournalReader(readerOptions.setProcessedStateStore(store), journalFile);
+            final List<Long> processed = new ArrayList<>();
+            verifyReader.forEachEntry(
+                new EntryReadOptions().setReadFilter(FilterMetadata::isProcessed),
+                entry -> processed.add(entry.getSequence())
+            );
+            verifyReader.close();
+
+            if (ProcessedStateStore.RECORD_HEADER == store) {
+                assertThat(processed).isEmpty();
+            } else {
+                assertThat(processed).containsExactly(4L, 15L);
+            }
+        }
+    }
+
+    @Test
+    public void it_compresses_batches_into_blocks() throws IOException {
+        final File journalFile = new File(testFolder.getRoot(), "journal_0.jdf");
+        final Journal journal = new Journal(
+            new JournalOptions().setCompression(JournalCompression.DEFLATE).setIndexInterval(8),
+            journalFile
+        );
+
+        final List<byte[]> batch = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            batch.add(("compressible payload " + i).getBytes());
+        }
+
+        journal.write(PAYLOAD);
+        journal.writeBatch(batch);
+        journal.writeBatch(batch);
+        journal.archiveAndClose();
+
+        assertThat(journalFile.length()).isLessThan(
+            (long) Journal.FILE_HEADER_SIZE + 201 * (Journal.RECORD_HEADER_SIZE + Journal.RECORD_CHECKSUM_SIZE)
+        );
+
+        final JournalReader journalReader = new JournalReader(
+            new JournalReaderOptions().setFailOnNotArchived(false).setFailOnNotClosedGracefully(false),
+            journalFile
+        );
+
+        assertThat(journalReader.getMetadata().getCompression()).isEqualTo(JournalCompression.DEFLATE);
+
+        final List<JournalEntry> entries = new ArrayList<>();
+        journalReader.forEachEntry(entries::add);
+
+        assertThat(entries).hasSize(201);
+        assertThat(entries.get(0).getData()).isEqualTo(PAYLOAD);
+
+        for (int i = 1; i < entries.size(); i++) {
+            assertThat(entries.get(i).getSequence()).isEqualTo((long) i);
+            assertThat(entries.get(i).getData()).isEqualTo(batch.get((i - 1) % 100));
+        }
+
+        final List<Long> viewSequences = new ArrayList<>();
+        journalReader.forEachEntryView(new EntryReadOptions().setStartSequence(150), view -> {
+            assertThat(view.getData()).isEqualTo(batch.get((int) (view.getSequence() - 101)));
+            viewSequences.add(view.getSequence());
+        });
+
+        final long[] filtered = journalReader
+            .stream(new EntryReadOptions().setStartSequence(42), false)
+            .mapToLong(JournalEntry::getSequence)
+            .toArray();
+        journalReader.close();
+
+        assertThat(viewSequences).hasSize(51);
+        assertThat(viewSequences.get(0)).isEqualTo(150L);
+        assertThat(filtered).isEqualTo(LongStream.range(42, 201).toArray());
+    }
+
+    @Test
+    public void it_verifies_checksums_lazily_with_the_journal_algorithm() throws IOException {
+        final File journalFile = testFolder.newFile();
+        final Journal journal = new Journal(new JournalOptions().setChecksum(JournalChecksum.CRC32C), journalFile);
+
+        for (int i = 0; i < 10; i++) {
+            journal.write(PAYLOAD);
+        }
+
+        journal.archiveAndClose();
+
+        // Corrupt the payload of the fourth record
+        try (final RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+            file.seek(Journal.FILE_HEADER_SIZE + 3 * (Journal.RECORD_HEADER_SIZE + PAYLOAD.length + 8) + 48);
+            file.write('P');
+        }
+
+        final JournalReader journalReader = new JournalReader(
+            new JournalReaderOptions().setFailOnNotArchived(false).setFailOnNotClosedGracefully(false),
+            journalFile
+        );
+
+        assertThat(journalReader.getMetadata().getChecksum()).isEqualTo(JournalChecksum.CRC32C);
+
+        final List<JournalEntry> entries = new ArrayList<>();
+        journalReader.forEachEntry(new EntryReadOptions().setVerifyChecksumLazily(true), entries::add);
+
+        assertThat(entries).hasSize(10);
+        assertThat(entries.get(2).getData()).isEqualTo(PAYLOAD);
+
+        try {
+            entries.get(3).getData();
+            throw new AssertionError("Corrupted payload was not detected");
+        } catch (final UncheckedIOException e) {
+            assertThat(e.getCause()).isInstanceOf(RecordChecksumException.class);
+        }
+
+        try {
+            journalReader.forEachEntry(entry -> {
+            });
+            throw new AssertionError("Corrupted payload was not detected");
+        } catch (final RecordChecksumException e) {
+            // Eager verification fails while reading
+        }
+
+        journalReader.close();
+
+        final File uncheckedFile = testFolder.newFile();
+        final Journal unchecked = new Journal(new JournalOptions().setChecksum(JournalChecksum.NONE), uncheckedFile);
+        unchecked.write(PAYLOAD);
+        unchecked.archiveAndClose();
+
+        final JournalReader uncheckedReader = new JournalReader(
+            new JournalReaderOptions().setFailOnNotArchived(false).setFailOnNotClosedGracefully(false),
+            uncheckedFile
+        );
+        final List<JournalEntry> uncheckedEntries = new ArrayList<>();
+        uncheckedReader.forEachEntry(uncheckedEntries::add);
+        uncheckedReader.close();
+
+        assertThat(uncheckedEntries).hasSize(1);
+        assertThat(uncheckedEntries.get(0).getChecksum()).isEqualTo(0L);
+    }
+
+    @Test
+    public void it_recovers_a_journal_that_was_not_closed_gracefully() throws IOException {
+        final File journalFile = testFolder.newFile();
+        final Journal journal = new Journal(journalFile);
+        final long recordSize = Journal.RECORD_HEADER_SIZE + PAYLOAD.length + Journal.RECORD_CHECKSUM_SIZE;
+
+        for (int i = 0; i < 10; i++) {
+            journal.write(PAYLOAD);
+        }
+
+        journal.flush();
+
+        for (int i = 0; i < 5; i++) {
+            journal.write(PAYLOAD);
+        }
+
+        // Copy the journal as a crash would leave it, with a torn record at its end
+        final File crashedFile = new File(testFolder.getRoot(), "crashed.jdf");
+        Files.copy(journalFile.toPath(), crashedFile.toPath());
+        journal.close();
+
+        try (final RandomAccessFile file = new RandomAccessFile(crashedFile, "rw")) {
+            file.seek(53);
+            assertThat(file.readLong()).isEqualTo(Journal.FILE_HEADER_SIZE + 10 * recordSize);
+
+            file.seek(file.length());
+            file.write(new byte[]{Journal.RECORD_MAGIC_BYTE, Journal.B_FALSE, 0, 0, 0, 7, 0, 0, 0, 0, 0, 0, 0, 15});
+        }
+
+        final Journal recovered = new Journal(new JournalOptions().setRecoverNotClosedGracefully(true), crashedFile);
+
+        assertThat(recovered.sequence()).isEqualTo(15L);
+        assertThat(crashedFile.length()).isEqualTo(Journal.FILE_HEADER_SIZE + 15 * recordSize);
+
+        recovered.write(PAYLOAD);
+        recovered.archiveAndClose();
+
+        final JournalReader journalReader = new JournalReader(
+            new JournalReaderOptions().setFailOnNotArchived(false).setFailOnNotClosedGracefully(false),
+            crashedFile
+        );
+        final List<JournalEntry> entries = new ArrayList<>();
+        journalReader.forEachEntry(entries::add);
+        journalReader.close();
+
+        assertThat(entries).hasSize(16);
+        assertThat(entries.get(15).getSequence()).isEqualTo(15L);
+    }
+
     @Test(expected = JournalMagicByteException.class)
     public void it_fails_to_open_a_file_that_is_not_a_journal() throws IOException {
         new Journal(testFile("not_journal_file.jdf"));
@@ -0,0 +1,143 @@
+package com.picoff.journaldb;
+
+import com.picoff.journaldb.exception.ShardCountMismatchException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ShardedJournalDBTest {
+    private final TemporaryFolder testFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        testFolder.create();
+    }
+
+    @After
+    public void tearDown() {
+        testFolder.delete();
+    }
+
+    @Test
+    public void it_spreads_writes_over_shards_and_data_directories() throws IOException, InterruptedException {
+        final File first = testFolder.newFolder();
+        final File second = testFolder.newFolder();
+
+        final ShardedJournalDB journalDB = new ShardedJournalDB(new ShardedJournalDBOptions()
+            .setDataDirectories(first, second)
+            .setShardCount(4));
+
+        assertThat(journalDB.getShardCount()).isEqualTo(4);
+        assertThat(journalDB.shardFor(42)).isSameAs(journalDB.shardFor(42));
+
+        for (long key = 0; key < 1000; key++) {
+            journalDB.write(key, new byte[16]);
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<IOException> failures = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            executor.execute(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    try {
+                        journalDB.write(new byte[16]);
+                    } catch (final IOException e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    }
+                }
+            });
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        assertThat(failures).isEmpty();
+
+        final long[] sequences = new long[4];
+
+        for (int shard = 0; shard < 4; shard++) {
+            sequences[shard] = journalDB.getShard(shard).relocate();
+        }
+
+        journalDB.close();
+
+        assertThat(new File(first, "shard_0").isDirectory()).isTrue();
+        assertThat(new File(second, "shard_1").isDirectory()).isTrue();
+        assertThat(new File(first, "shard_2").isDirectory()).isTrue();
+        assertThat(new File(second, "shard_3").isDirectory()).isTrue();
+
+        int total = 0;
+
+        for (int shard = 0; shard < 4; shard++) {
+            final JournalReader reader = journalDB.getShard(shard).createReader(
+                new JournalReaderOptions().setFailOnNotArchived(false).setFailOnNotClosedGracefully(false),
+                sequences[shard]
+            );
+
+            final AtomicInteger entries = new AtomicInteger();
+            reader.forEachEntry(entry -> entries.incrementAndGet());
+            reader.close();
+
+            assertThat(entries.get()).isGreaterThan(0);
+            total += entries.get();
+        }
+
+        assertThat(total).isEqualTo(5000);
+    }
+
+    @Test
+    public void it_routes_batches_by_key_to_one_shard() throws IOException {
+        final ShardedJournalDB journalDB = new ShardedJournalDB(new ShardedJournalDBOptions()
+            .setDataDirectories(testFolder.newFolder())
+            .setShardCount(4));
+
+        final JournalDB shard = journalDB.shardFor(7);
+
+        journalDB.write(7, ByteBuffer.wrap(new byte[]{0}));
+        journalDB.writeBatch(7, Arrays.asList(new byte[]{1}, new byte[]{2}));
+        journalDB.writeBatch(7, new ByteBuffer[]{ByteBuffer.wrap(new byte[]{3}), ByteBuffer.wrap(new byte[]{4})});
+
+        final long sequence = shard.relocate();
+        journalDB.close();
+
+        final List<Byte> values = new ArrayList<>();
+        final JournalReader reader = shard.createReader(
+            new JournalReaderOptions().setFailOnNotArchived(false).setFailOnNotClosedGracefully(false),
+            sequence
+        );
+        reader.forEachEntry(entry -> values.add(entry.getData()[0]));
+        reader.close();
+
+        assertThat(values).containsExactly((byte) 0, (byte) 1, (byte) 2, (byte) 3, (byte) 4).inOrder();
+    }
+
+    @Test(expected = ShardCountMismatchException.class)
+    public void it_fails_to_reopen_with_a_different_shard_count() throws IOException {
+        final File dataDirectory = testFolder.newFolder();
+
+        new ShardedJournalDB(new ShardedJournalDBOptions()
+            .setDataDirectories(dataDirectory)
+            .setShardCount(2)).close();
+
+        new ShardedJournalDB(new ShardedJournalDBOptions()
+            .setDataDirectories(dataDirectory)
+            .setShardCount(3));
+    }
+}